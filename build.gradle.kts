@@ -15,6 +15,8 @@ plugins {
 
     id("nebula.javadoc-jar") version "18.4.0"
     id("nebula.source-jar") version "18.4.0"
+
+    id("me.champeau.jmh") version "0.7.1"
 }
 
 apply(plugin = "nebula.publish-verification")
@@ -74,10 +76,31 @@ dependencies {
 }
 
 tasks.named<Test>("test") {
-    useJUnitPlatform()
+    useJUnitPlatform {
+        excludeTags("scale")
+    }
     jvmArgs = listOf("-XX:+UnlockDiagnosticVMOptions", "-XX:+ShowHiddenFrames")
 }
 
+// tests running the recipes on big generated inputs within a time and heap budget
+tasks.register<Test>("scaleTest") {
+    useJUnitPlatform {
+        includeTags("scale")
+    }
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    maxHeapSize = "4g"
+}
+
+// benchmarks of the recipe hot paths live in src/jmh/java, run them with: gradlew jmh
+jmh {
+    jmhVersion.set("1.37")
+    // InvertConditionBenchmark compares against LegacyInvertCondition of the test sources
+    includeTests.set(true)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
 tasks.withType<JavaCompile>().configureEach {
     options.encoding = "UTF-8"
     options.compilerArgs.add("-parameters")
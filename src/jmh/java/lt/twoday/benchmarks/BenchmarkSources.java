@@ -0,0 +1,88 @@
+package lt.twoday.benchmarks;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+/***
+ * pre-parsed sources the benchmarks run on: a generated validator with an if / else-if ladder
+ * and nested guard clauses, the kind of code that is slow to rewrite
+ */
+public class BenchmarkSources {
+
+    public static String validator(int branches) {
+        StringBuilder src = new StringBuilder();
+        src.append("class Validator {\n");
+        src.append("    String validate(Object value, int code) {\n");
+        src.append("        if (value != null) {\n");
+
+        for (int i=0; i < branches; i++) {
+            src.append(i == 0 ? "            if" : "            else if")
+               .append(" (code == ").append(i).append(") {\n")
+               .append("                if (value instanceof String && code > ").append(i).append(") {\n")
+               .append("                    System.out.println(\"string \" + code);\n")
+               .append("                    return \"s").append(i).append("\";\n")
+               .append("                } else {\n")
+               .append("                    System.out.println(\"other \" + code);\n")
+               .append("                }\n")
+               .append("            }\n");
+        }
+
+        src.append("            else {\n");
+        src.append("                throw new IllegalArgumentException(\"unknown code \" + code);\n");
+        src.append("            }\n");
+        src.append("        } else {\n");
+        src.append("            throw new IllegalArgumentException(\"value must not be null\");\n");
+        src.append("        }\n");
+        src.append("        return null;\n");
+        src.append("    }\n");
+        src.append("}\n");
+        return src.toString();
+    }
+
+    /*** a single if whose condition chains {@code terms} comparisons, instanceof checks and negations */
+    public static String longCondition(int terms) {
+        StringBuilder src = new StringBuilder();
+        src.append("class Conditions {\n");
+        src.append("    void check(Object value, int code) {\n");
+        src.append("        if (");
+
+        for (int i=0; i < terms; i++) {
+            if (i > 0)
+                src.append(i % 3 == 0 ? "\n            || " : " && ");
+
+            switch (i % 4) {
+                case 0: src.append("code > ").append(i); break;
+                case 1: src.append("value instanceof String"); break;
+                case 2: src.append("!(code == ").append(i).append(")"); break;
+                default: src.append("code != ").append(i); break;
+            }
+        }
+
+        src.append(") {\n");
+        src.append("            System.out.println(code);\n");
+        src.append("        }\n");
+        src.append("    }\n");
+        src.append("}\n");
+        return src.toString();
+    }
+
+    public static J.CompilationUnit parse(String source) {
+        ExecutionContext executionContext = new InMemoryExecutionContext(Throwable::printStackTrace);
+        return (J.CompilationUnit) JavaParser.fromJavaVersion()
+                .build()
+                .parse(executionContext, source)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("could not parse benchmark source"));
+    }
+
+    public static J.MethodDeclaration firstMethod(J.CompilationUnit compUnit) {
+        return (J.MethodDeclaration) compUnit.getClasses().get(0).getBody().getStatements().get(0);
+    }
+
+    /*** the outermost if of the first method */
+    public static J.If firstIf(J.CompilationUnit compUnit) {
+        return (J.If) firstMethod(compUnit).getBody().getStatements().get(0);
+    }
+}
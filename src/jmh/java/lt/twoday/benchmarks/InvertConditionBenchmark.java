@@ -0,0 +1,61 @@
+package lt.twoday.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.tree.J;
+
+import lt.twoday.openrewrite.LegacyInvertCondition;
+import lt.twoday.openrewrite.MyInvertCondition;
+
+/***
+ * condition inversion on long boolean chains:
+ * the structural inverter against the legacy visitor that simplified on every visited node
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvertConditionBenchmark {
+
+    @Param({"5", "50"})
+    int terms;
+
+    J.If iff;
+    Cursor ifCursor;
+
+    ExecutionContext executionContext;
+
+    @Setup
+    public void setup() {
+        J.CompilationUnit compUnit = BenchmarkSources.parse(BenchmarkSources.longCondition(terms));
+        iff = BenchmarkSources.firstIf(compUnit);
+        ifCursor = new Cursor(new Cursor(new Cursor(null, Cursor.ROOT_VALUE), compUnit), iff);
+        executionContext = new InMemoryExecutionContext(Throwable::printStackTrace);
+    }
+
+    @Benchmark
+    public J.ControlParentheses<?> structural() {
+        return MyInvertCondition.invert(iff.getIfCondition(), ifCursor, executionContext);
+    }
+
+    @Benchmark
+    public J.ControlParentheses<?> legacy() {
+        return LegacyInvertCondition.invert(iff.getIfCondition(), ifCursor);
+    }
+}
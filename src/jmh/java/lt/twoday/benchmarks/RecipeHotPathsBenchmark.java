@@ -0,0 +1,107 @@
+package lt.twoday.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.java.tree.J;
+
+import lt.twoday.extractmethodmarker.BlockComplexityVisitor;
+import lt.twoday.openrewrite.AllLinesCounter;
+import lt.twoday.openrewrite.LSTUtils;
+import lt.twoday.openrewrite.MyInvertCondition;
+import lt.twoday.reduceconditionbranches.ReduceConditionBranches;
+
+/***
+ * throughput of the recipe hot paths on pre-parsed trees;
+ * run with the gc profiler (configured in the builds) to see the allocation rate as well.
+ *
+ * The recipe and the visitors are built once, the execution context is fresh for each invocation:
+ * the data table rows and messages of the recipes would pile up in a shared one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipeHotPathsBenchmark {
+
+    @Param({"5", "50"})
+    int branches;
+
+    J.CompilationUnit compUnit;
+    J.MethodDeclaration method;
+    J.If iff;
+    Cursor ifCursor;
+
+    TreeVisitor<?, ExecutionContext> reduceConditionBranchesVisitor;
+    BlockComplexityVisitor blockComplexityVisitor;
+
+    /*** the execution context of a single invocation */
+    @State(Scope.Thread)
+    public static class Context {
+
+        ExecutionContext executionContext;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            executionContext = new InMemoryExecutionContext(Throwable::printStackTrace);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        compUnit = BenchmarkSources.parse(BenchmarkSources.validator(branches));
+        method = BenchmarkSources.firstMethod(compUnit);
+        iff = BenchmarkSources.firstIf(compUnit);
+        ifCursor = new Cursor(new Cursor(new Cursor(null, Cursor.ROOT_VALUE), compUnit), iff);
+        reduceConditionBranchesVisitor = new ReduceConditionBranches().getVisitor();
+        blockComplexityVisitor = new BlockComplexityVisitor();
+    }
+
+    @Benchmark
+    public Tree reduceConditionBranches(Context context) {
+        return reduceConditionBranchesVisitor.visit(compUnit, context.executionContext);
+    }
+
+    @Benchmark
+    public J.ControlParentheses<?> invertCondition(Context context) {
+        return MyInvertCondition.invert(iff.getIfCondition(), ifCursor, context.executionContext);
+    }
+
+    @Benchmark
+    public int countLines() {
+        return AllLinesCounter.countLines(method);
+    }
+
+    @Benchmark
+    public boolean spansMoreThan() {
+        return AllLinesCounter.spansMoreThan(method, 2);
+    }
+
+    @Benchmark
+    public boolean hasGuaranteedReturn() {
+        return LSTUtils.hasGuaranteedReturn(method.getBody());
+    }
+
+    @Benchmark
+    public J.MethodDeclaration blockComplexity(Context context) {
+        return blockComplexityVisitor.visitMethodDeclaration(method, context.executionContext);
+    }
+}
@@ -94,7 +94,8 @@ public class BlockCommentManager {
                     );
     }
     
-    public static Block markForRefactoring(J.Block block) {
+    /*** @param methodName the name suggested for the method to extract the block into */
+    public static Block markForRefactoring(J.Block block, String methodName) {
         log.trace("adding refactoring comments on the block {}", block.getId());
         
         if (isMarkedForRefactoring(block)) {
@@ -104,17 +105,17 @@ public class BlockCommentManager {
         
         return block
                 .withPrefix(
-                    block.getPrefix().withComments(makeRefactoringPreComment(block))
+                    block.getPrefix().withComments(makeRefactoringPreComment(block, methodName))
                         )
                 .withEnd(
                     block.getEnd().withComments(makeRefactoringEndComment(block))
                         );
     }
     
-    public static List<Comment> makeRefactoringPreComment(J.Block block) {
+    public static List<Comment> makeRefactoringPreComment(J.Block block, String methodName) {
         return Arrays.asList(
                 new TextComment(true, 
-                            REFACTORING_BLOCK_BEGIN_COMMENT+block.getId() + " named '"+ BlockNameCreator.createMethodName(block)+"'", 
+                            REFACTORING_BLOCK_BEGIN_COMMENT+block.getId() + " named '"+ methodName +"'", 
                             null, 
                             Markers.EMPTY)
                         );
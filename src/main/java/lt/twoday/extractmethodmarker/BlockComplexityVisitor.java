@@ -1,12 +1,17 @@
 package lt.twoday.extractmethodmarker;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
+import org.openrewrite.Cursor;
 import org.openrewrite.ExecutionContext;
 import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.java.JavaVisitor;
 import org.openrewrite.java.tree.J;
 import org.openrewrite.java.tree.J.Block;
@@ -18,6 +23,11 @@ import org.openrewrite.marker.Markers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import lt.twoday.openrewrite.DeepNesting;
+import lt.twoday.openrewrite.MethodBudget;
+import lt.twoday.openrewrite.MethodsOverBudget;
+import lt.twoday.openrewrite.jfr.BlockComplexityEvent;
+
 public class BlockComplexityVisitor extends JavaVisitor<ExecutionContext> {
         
     private static final Logger log  = LoggerFactory.getLogger(BlockComplexityVisitor.class);
@@ -38,22 +48,84 @@ public class BlockComplexityVisitor extends JavaVisitor<ExecutionContext> {
     
     private ComplexityCriteria complexityCriteria = DEFAULT_COMPLEXITY_CRITERIA;
 
+    private final MethodBudget budget;
+    
+    @Nullable
+    private final MethodsOverBudget methodsOverBudget;
+    
+    private MethodBudget.Deadline deadline = MethodBudget.UNLIMITED.start();
+    
+    // blocks measured and found fit for extract method in the method being marked
+    private int blocksMeasured = 0;
+    private int candidatesFound = 0;
+    
+    public BlockComplexityVisitor() {
+        this(MethodBudget.UNLIMITED, null);
+    }
+    
+    /*** methods over budget are left without block marks and recorded in {@code methodsOverBudget}, if given */
+    public BlockComplexityVisitor(MethodBudget budget, @Nullable MethodsOverBudget methodsOverBudget) {
+        this.budget = budget;
+        this.methodsOverBudget = methodsOverBudget;
+    }
     
     @Override
     public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, ExecutionContext p) {
-
-        log.trace("visiting method {}", method.getName());
-        
         Block body = method.getBody();
         if (body == null)
             return (J.MethodDeclaration) super.visitMethodDeclaration(method, p);
         
+        int depth = DeepNesting.depthOf(body);
+        return DeepNesting.call(depth, 
+                                () -> markMethod(method, body, depth, p));
+    }
+    
+    /*** 
+     * marks a method whose nesting depth the caller has already measured (and made room on the stack for),
+     * {@code parent} being the cursor of the method's parent
+     */
+    public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, int nestingDepth, ExecutionContext p, Cursor parent) {
+        Block body = method.getBody();
+        if (body == null)
+            return (J.MethodDeclaration) visit(method, p, parent);
+        
+        setCursor(new Cursor(parent, method));
+        try {
+            return markMethod(method, body, nestingDepth, p);
+        } finally {
+            setCursor(parent);
+        }
+    }
+    
+    private J.MethodDeclaration markMethod(J.MethodDeclaration method, Block body, int nestingDepth, ExecutionContext p) {
+        log.trace("visiting method {}", method.getName());
+        
+        String overBudget = budget.exceededBy(nestingDepth, body);
+        if (overBudget != null)
+            return skipped(method, overBudget, p);
+        
         BlockMark initialComplexity = new BlockMark(Tree.randomId());
         
         List<Statement> revisedStatements = new ArrayList<>();
         
+        BlockComplexityEvent event = new BlockComplexityEvent();
+        event.begin();
+        blocksMeasured = 0;
+        candidatesFound = 0;
+        
+        deadline = budget.start();
         for (Statement statement: body.getStatements())
-            revisedStatements.add( assignBlockMarkersRecursively(statement, initialComplexity) );
+            revisedStatements.add( assignBlockMarkers(statement, initialComplexity) );
+        
+        if (event.shouldCommit()) {
+            event.method = method.getSimpleName();
+            event.blocks = blocksMeasured;
+            event.candidates = candidatesFound;
+            event.commit();
+        }
+        
+        if (deadline.passed())
+            return skipped(method, budget.timeExceeded(), p);
         
         method = method.withBody(
                     body.withStatements(revisedStatements)
@@ -66,155 +138,262 @@ public class BlockComplexityVisitor extends JavaVisitor<ExecutionContext> {
         return ret;
     }
 
+    private J.MethodDeclaration skipped(J.MethodDeclaration method, String reason, ExecutionContext p) {
+        if (methodsOverBudget != null)
+            methodsOverBudget.record(p, getCursor(), method, reason);
+        
+        return method;
+    }
+
     private static boolean hasExistingMarkers(Statement statement) {
         List<BlockMark> existingMarkers = statement.getMarkers().findAll(BlockMark.class);
         return existingMarkers != null && !existingMarkers.isEmpty();
     }
     
-    private Statement assignBlockMarkersRecursively(Statement statement, BlockMark parentBlockComplexity) {
-        if (statement == null)
-            return statement;
-        
-        if (hasExistingMarkers(statement)) {
-            log.warn("block marking error #1: statement already had existing marker, boiling out ({})", statement.getMarkers());
-            return statement;
+    /*** 
+     * marks the blocks of a statement post-order, keeping the statements still being marked on a heap stack:
+     * a block is judged once all of its nested blocks are, so marked children rule out their parents
+     */
+    private Statement assignBlockMarkers(Statement statement, BlockMark parentBlockComplexity) {
+        Deque<Step> steps = new ArrayDeque<>();
+        steps.push(new StatementStep(statement, parentBlockComplexity));
+        
+        while (true) {
+            Step step = steps.peek();
+            if (step.children == null)
+                step.children = step.expand();
+            
+            if (step.marked.size() < step.children.size()) {
+                steps.push(step.children.get(step.marked.size()));
+                continue;
+            }
+            
+            steps.pop();
+            J ret = step.complete();
+            if (steps.isEmpty())
+                return (Statement) ret;
+            
+            steps.peek().marked.add(ret);
         }
+    }
+    
+    /*** a node of the statement being marked: it is marked once all of its children are */
+    private abstract static class Step {
         
-        BlockMark blockComplexity = parentBlockComplexity.clone(Tree.randomId());
-        blockComplexity.nestingDepth ++;
+        // the steps of the children, null until the node is reached
+        List<Step> children = null;
         
-        if (statement instanceof J.Block)
-            return markBlockComplexity(statement, (J.Block) statement, blockComplexity);
+        // the marked children, in order
+        final List<J> marked = new ArrayList<>();
         
-        if (statement instanceof J.ForLoop) {
-            ForLoop forr = (J.ForLoop)statement;
-            return forr.withBody( 
-                    assignBlockMarkersRecursively(forr.getBody(), blockComplexity)
-                                );
-        }
+        /*** called when the node is reached: the children to mark before it */
+        abstract List<Step> expand();
         
-        if (statement instanceof J.ForEachLoop) {
-            J.ForEachLoop foreach = (J.ForEachLoop)statement;
-            return foreach.withBody( 
-                    assignBlockMarkersRecursively(foreach.getBody(), blockComplexity)
-                                );
-        }
-        
-        if (statement instanceof J.WhileLoop) {
-            J.WhileLoop whil = (J.WhileLoop)statement;
-            return whil.withBody( 
-                    assignBlockMarkersRecursively(whil.getBody(), blockComplexity)
-                                );
-        }
+        /*** called once all the children are marked */
+        abstract J complete();
+    }
+    
+    private class StatementStep extends Step {
         
-        if (statement instanceof J.DoWhileLoop){
-            J.DoWhileLoop doWhil = (J.DoWhileLoop)statement;
-            return doWhil.withBody( 
-                    assignBlockMarkersRecursively(doWhil.getBody(), blockComplexity)
-                                );
-        }
+        private final Statement statement;
+        private final BlockMark parentBlockComplexity;
         
-        if (statement instanceof J.Try) {
-            J.Try tr = (J.Try)statement;
-            return tr.withBody( 
-                    markBlockComplexity(tr, tr.getBody(), blockComplexity)
-                                );
-        }
+        // re-builds the statement from its marked children, null if it is left as it is
+        @Nullable
+        private Function<List<J>, J> rebuild = null;
         
-        if (statement instanceof J.If) {
-            J.If iff = (J.If)statement;
-            return iff.withThenPart(
-                        assignBlockMarkersRecursively(iff.getThenPart(), blockComplexity)
-                    )
-                    .withElsePart(
-                        assignBlockMarkersRecursively(iff.getElsePart(), blockComplexity)
-                    );
+        StatementStep(Statement statement, BlockMark parentBlockComplexity) {
+            this.statement = statement;
+            this.parentBlockComplexity = parentBlockComplexity;
         }
         
-        if (statement instanceof J.Switch) {
-            J.Switch sw = (J.Switch)statement;
-            return sw.withCases( 
-                    markBlockComplexity(sw, sw.getCases(), blockComplexity)
-                                );
+        @Override
+        List<Step> expand() {
+            if (statement == null || deadline.passed())
+                return Collections.emptyList();
+            
+            if (hasExistingMarkers(statement)) {
+                log.warn("block marking error #1: statement already had existing marker, boiling out ({})", statement.getMarkers());
+                return Collections.emptyList();
+            }
+            
+            BlockMark blockComplexity = parentBlockComplexity.clone(Tree.randomId());
+            blockComplexity.nestingDepth ++;
+            
+            if (statement instanceof J.Block) {
+                rebuild = marked -> marked.get(0);
+                return Arrays.asList(new BlockStep(statement, (J.Block) statement, blockComplexity));
+            }
+            
+            if (statement instanceof J.ForLoop) {
+                ForLoop forr = (J.ForLoop)statement;
+                rebuild = marked -> forr.withBody((Statement) marked.get(0));
+                return Arrays.asList(new StatementStep(forr.getBody(), blockComplexity));
+            }
+            
+            if (statement instanceof J.ForEachLoop) {
+                J.ForEachLoop foreach = (J.ForEachLoop)statement;
+                rebuild = marked -> foreach.withBody((Statement) marked.get(0));
+                return Arrays.asList(new StatementStep(foreach.getBody(), blockComplexity));
+            }
+            
+            if (statement instanceof J.WhileLoop) {
+                J.WhileLoop whil = (J.WhileLoop)statement;
+                rebuild = marked -> whil.withBody((Statement) marked.get(0));
+                return Arrays.asList(new StatementStep(whil.getBody(), blockComplexity));
+            }
+            
+            if (statement instanceof J.DoWhileLoop){
+                J.DoWhileLoop doWhil = (J.DoWhileLoop)statement;
+                rebuild = marked -> doWhil.withBody((Statement) marked.get(0));
+                return Arrays.asList(new StatementStep(doWhil.getBody(), blockComplexity));
+            }
+            
+            if (statement instanceof J.Try) {
+                J.Try tr = (J.Try)statement;
+                rebuild = marked -> tr.withBody((J.Block) marked.get(0));
+                return Arrays.asList(new BlockStep(tr, tr.getBody(), blockComplexity));
+            }
+            
+            if (statement instanceof J.If) {
+                J.If iff = (J.If)statement;
+                rebuild = marked -> iff.withThenPart((Statement) marked.get(0))
+                                       .withElsePart((Else) marked.get(1));
+                return Arrays.asList(new StatementStep(iff.getThenPart(), blockComplexity), 
+                                     new ElseStep(iff.getElsePart(), blockComplexity));
+            }
+            
+            if (statement instanceof J.Switch) {
+                J.Switch sw = (J.Switch)statement;
+                rebuild = marked -> sw.withCases((J.Block) marked.get(0));
+                return Arrays.asList(new BlockStep(sw, sw.getCases(), blockComplexity));
+            }
+            
+            if (statement instanceof J.Case) {
+                J.Case ccase = (J.Case)statement;
+                if (ccase.getStatements() == null)
+                    return Collections.emptyList();
+                
+                rebuild = marked -> ccase.withStatements(statements(marked));
+                return statementSteps(ccase.getStatements(), blockComplexity);
+            }
+            
+            return Collections.emptyList();
         }
         
-        if (statement instanceof J.Case) {
-            J.Case ccase = (J.Case)statement;
-            return ccase
-                    .withStatements(
-                            assignBlockMarkersRecursively(ccase.getStatements(), blockComplexity)
-                        );
+        @Override
+        J complete() {
+            return rebuild == null ? statement : rebuild.apply(marked);
         }
-        
-        return statement;
     }
-
-    private J.Block markBlockComplexity(Statement parent, J.Block block, BlockMark parentBlockMarker) {
-        if (block == null)
-            return block;
+    
+    private class ElseStep extends Step {
         
-        List<Statement> statements = block.getStatements();
-        if (statements == null || statements.isEmpty())
-            return block;
+        private final Else elsePart;
+        private final BlockMark blockComplexity;
         
-        if (BlockCommentManager.isMarked(block)) {
-            log.error("block marking error #2: {} already has a refactoring comment: {}", block.getId(), block.getComments());
-            return block;
+        ElseStep(Else elsePart, BlockMark blockComplexity) {
+            this.elsePart = elsePart;
+            this.blockComplexity = blockComplexity;
         }
         
-        if (hasExistingMarkers(block)) {
-            log.error("block marking error #3: {} already has existing markers: {}", block.getId(), block.getMarkers());
-            return block;
+        @Override
+        List<Step> expand() {
+            if (elsePart == null)
+                return Collections.emptyList();
+            
+            return Arrays.asList(new StatementStep(elsePart.getBody(), blockComplexity));
         }
         
-        List<Statement> revised = new ArrayList<>();
+        @Override
+        J complete() {
+            if (elsePart == null)
+                return elsePart;
+            
+            return elsePart.withBody((Statement) marked.get(0));
+        }
+    }
+    
+    private class BlockStep extends Step {
         
-        BlockMark blockMarker = parentBlockMarker.clone(Tree.randomId());
-//        blockMarker.nestingDepth ++;
-        blockMarker.statementCount = statements.size();
+        private final Statement parent;
+        private final J.Block block;
+        private final BlockMark parentBlockMarker;
         
-        //block = block.withMarkers(block.getMarkers().add(blockMarker));
-        // block = block.withStatements(revised).withMarkers(block.getMarkers().add(blockMarker));
-
+        private BlockMark blockMarker = null;
         
-        for (Statement st: statements)
-            revised.add( assignBlockMarkersRecursively(st, blockMarker) );
+        BlockStep(Statement parent, J.Block block, BlockMark parentBlockMarker) {
+            this.parent = parent;
+            this.block = block;
+            this.parentBlockMarker = parentBlockMarker;
+        }
         
-        if (BlockCommentManager.isMarked(block) ) {
-            log.error("block marking error #4: block {} got refactoring comment: {}", block.getId(), block.getComments());
-            return block.withStatements(revised);
+        @Override
+        List<Step> expand() {
+            if (block == null)
+                return Collections.emptyList();
+            
+            List<Statement> statements = block.getStatements();
+            if (statements == null || statements.isEmpty())
+                return Collections.emptyList();
+            
+            if (BlockCommentManager.isMarked(block)) {
+                log.error("block marking error #2: {} already has a refactoring comment: {}", block.getId(), block.getComments());
+                return Collections.emptyList();
+            }
+            
+            if (hasExistingMarkers(block)) {
+                log.error("block marking error #3: {} already has existing markers: {}", block.getId(), block.getMarkers());
+                return Collections.emptyList();
+            }
+            
+            blocksMeasured++;
+            
+            blockMarker = parentBlockMarker.clone(Tree.randomId());
+            blockMarker.statementCount = statements.size();
+            
+            return statementSteps(statements, blockMarker);
         }
         
-        if (! blockMarker.hasMarkedChildren) {
-            if (MarkExtractMethodBlocksRecipe.isRefactorable(parent)) {
-                if ( complexityCriteria.apply(blockMarker.statementCount, blockMarker.nestingDepth) ) {
-                    blockMarker.setFitsForExtractMethod();
+        @Override
+        J complete() {
+            if (blockMarker == null)
+                return block;
+            
+            List<Statement> revised = statements(marked);
+            
+            if (BlockCommentManager.isMarked(block) ) {
+                log.error("block marking error #4: block {} got refactoring comment: {}", block.getId(), block.getComments());
+                return block.withStatements(revised);
+            }
+            
+            if (! blockMarker.hasMarkedChildren) {
+                if (MarkExtractMethodBlocksRecipe.isRefactorable(parent)) {
+                    if ( complexityCriteria.apply(blockMarker.statementCount, blockMarker.nestingDepth) ) {
+                        blockMarker.setFitsForExtractMethod();
+                        candidatesFound++;
+                    }
                 }
             }
+            
+            return block
+                    .withMarkers(Markers.build(Arrays.asList(blockMarker)))
+                    .withStatements(revised);
         }
-
-        return block
-                .withMarkers(Markers.build(Arrays.asList(blockMarker)))
-                .withStatements(revised);
     }
-
-    private Else assignBlockMarkersRecursively(Else elsePart, BlockMark blockComplexity) {
-        if (elsePart == null)
-            return elsePart;
-        
-        return elsePart.withBody(
-                    assignBlockMarkersRecursively(elsePart.getBody(), blockComplexity)
-                );
+    
+    private List<Step> statementSteps(List<Statement> statements, BlockMark blockComplexity) {
+        List<Step> ret = new ArrayList<>(statements.size());
+        for (Statement st: statements)
+            ret.add(new StatementStep(st, blockComplexity));
+        return ret;
     }
     
-    private List<Statement> assignBlockMarkersRecursively(List<Statement> statements, BlockMark blockComplexity) {
-        if (statements == null)
-            return statements;
-        
-        return statements.stream()
-                .map(st -> assignBlockMarkersRecursively(st, blockComplexity))
-                .collect(Collectors.toList());
+    private static List<Statement> statements(List<J> marked) {
+        List<Statement> ret = new ArrayList<>(marked.size());
+        for (J j: marked)
+            ret.add((Statement) j);
+        return ret;
     }
 
-
 }
@@ -1,5 +1,7 @@
 package lt.twoday.extractmethodmarker;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.openrewrite.PrintOutputCapture;
 import org.openrewrite.java.JavaPrinter;
 import org.openrewrite.java.tree.J.Block;
@@ -11,10 +13,10 @@ public class BlockNameCreator {
     
     private static final String CHAT_GPT_PROMPT = "Please suggest a better name for this Java function. Be laconic, only output the suggested function name without any comments and explanations";
 
-    static int nameNumber = 0;
+    static final AtomicInteger nameNumber = new AtomicInteger();
     
     public static String createMethodName(Block block){
-        return "method"+nameNumber++;
+        return "method"+nameNumber.getAndIncrement();
         /*
         String javaCode = toJavaCodeString(block);
         
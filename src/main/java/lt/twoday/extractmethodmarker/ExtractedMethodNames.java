@@ -0,0 +1,27 @@
+package lt.twoday.extractmethodmarker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openrewrite.java.tree.J;
+
+import lt.twoday.openrewrite.LSTUtils;
+
+/***
+ * names of the methods suggested for extracting the blocks of one source file.
+ * Blocks of the same code, however formatted and commented, are suggested the same method: extracted once, called twice.
+ */
+class ExtractedMethodNames {
+
+    // by the structural hash of the block
+    private final Map<Long, String> names = new HashMap<>();
+
+    String nameOf(J.Block block) {
+        return names.computeIfAbsent(LSTUtils.structuralHash(block), 
+                                     hash -> BlockNameCreator.createMethodName(block));
+    }
+
+    void clear() {
+        names.clear();
+    }
+}
@@ -1,22 +1,88 @@
 package lt.twoday.extractmethodmarker;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
 import org.openrewrite.Recipe;
-import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.java.JavaIsoVisitor;
-import org.openrewrite.java.JavaVisitor;
 import org.openrewrite.java.tree.J;
 import org.openrewrite.java.tree.J.MethodDeclaration;
 import org.openrewrite.java.tree.Statement;
 import org.openrewrite.marker.Markers;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import lombok.EqualsAndHashCode;
 import lombok.Value;
+import lt.twoday.openrewrite.DeepNesting;
+import lt.twoday.openrewrite.GeneratedSources;
+import lt.twoday.openrewrite.LineRanges;
+import lt.twoday.openrewrite.MethodBudget;
+import lt.twoday.openrewrite.MethodsOverBudget;
+import lt.twoday.openrewrite.TargetedMethods;
+import lt.twoday.openrewrite.jfr.CompilationUnitEvent;
 
 @Value
 @EqualsAndHashCode(callSuper = true)
 public class MarkExtractMethodBlocksRecipe  extends Recipe {
 
+    @Option(displayName = "Maximum nodes per method",
+            description = "Methods with more statement nodes are left unmarked and reported in the methods over budget data table.",
+            example = "20000",
+            required = false)
+    @Nullable
+    Integer maxNodes;
+
+    @Option(displayName = "Maximum nesting per method",
+            description = "Methods with statements nested deeper are left unmarked and reported in the methods over budget data table.",
+            example = "200",
+            required = false)
+    @Nullable
+    Integer maxNesting;
+
+    @Option(displayName = "Maximum milliseconds per method",
+            description = "Methods taking longer to analyse are left unmarked and reported in the methods over budget data table.",
+            example = "10000",
+            required = false)
+    @Nullable
+    Long maxMillis;
+
+    @Option(displayName = "Line ranges",
+            description = "Only methods overlapping these lines are marked, given as <source path>:<line ranges>. "
+                        + "Sources not listed are marked as a whole.",
+            example = "src/main/java/com/acme/Parser.java:10-20,35",
+            required = false)
+    @Nullable
+    List<String> lineRanges;
+
+    transient MethodBudget budget;
+    transient Map<String, LineRanges> lineRangesByPath;
+    transient MethodsOverBudget methodsOverBudget = new MethodsOverBudget(this);
+
+    public MarkExtractMethodBlocksRecipe() {
+        this(null, null, null, null);
+    }
+
+    @JsonCreator
+    public MarkExtractMethodBlocksRecipe(@Nullable @JsonProperty("maxNodes") Integer maxNodes,
+                                         @Nullable @JsonProperty("maxNesting") Integer maxNesting,
+                                         @Nullable @JsonProperty("maxMillis") Long maxMillis,
+                                         @Nullable @JsonProperty("lineRanges") List<String> lineRanges) {
+        this.maxNodes = maxNodes;
+        this.maxNesting = maxNesting;
+        this.maxMillis = maxMillis;
+        this.lineRanges = lineRanges;
+        this.budget = MethodBudget.of(maxNodes, maxNesting, maxMillis);
+        this.lineRangesByPath = lineRanges == null 
+                                    ? Collections.emptyMap() 
+                                    : LineRanges.parseByPath(lineRanges);
+    }
+
     @Override
     public String getDisplayName() {
         return "Marks blocks for extract method";
@@ -39,52 +105,116 @@ public class MarkExtractMethodBlocksRecipe  extends Recipe {
     }
     
     @Override
-    public TreeVisitor<?, ExecutionContext> getVisitor() {
+    public MarkingVisitor getVisitor() {
+        return new MarkingVisitor();
+    }
+    
+    /***
+     * the visitor of this recipe.
+     * 
+     * Another visitor traversing the compilation unit itself may apply this one to its methods instead:
+     * it then calls {@link #enterCompilationUnit} before and {@link #exitCompilationUnit} after its traversal.
+     */
+    public class MarkingVisitor extends JavaIsoVisitor<ExecutionContext> {
+        
+        private boolean inMethod = false;
+        
+        // methods marked in the source file being visited
+        private int methodsMarked = 0;
+        
+        // of the blocks marked in the source file being visited
+        private final ExtractedMethodNames extractedMethodNames = new ExtractedMethodNames();
+        
+        // the methods of the source file being visited to mark, null if all of them
+        @Nullable
+        private TargetedMethods targetedMethods = null;
+        
+        @Nullable
+        private CompilationUnitEvent event = null;
         
-        return new JavaIsoVisitor<ExecutionContext>() {
+        @Override
+        public J.CompilationUnit visitCompilationUnit(J.CompilationUnit compUnit, ExecutionContext p) {
+            if (!enterCompilationUnit(compUnit, p))
+                return compUnit;
             
-            private boolean inMethod = false;
+            J.CompilationUnit ret = super.visitCompilationUnit(compUnit, p);
             
-            @Override
-            public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, ExecutionContext p) {
-                
-                // step1: mark code blocks within this method
-                method = new BlockComplexityVisitor().visitMethodDeclaration(method, p);
-                
-                // step2: put appropriate the comments on the marked blocks
-                inMethod = true;
-                MethodDeclaration ret = (J.MethodDeclaration) super.visitMethodDeclaration(method, p);
-                inMethod = false;
-                return ret;
-            }
+            exitCompilationUnit(compUnit);
+            return ret;
+        }
+        
+        /*** sets up for marking the methods of the compilation unit; false if it is to be left alone */
+        public boolean enterCompilationUnit(J.CompilationUnit compUnit, ExecutionContext p) {
+            if (GeneratedSources.isGenerated(compUnit, p))
+                return false;
             
-            @Override
-            public J.Block visitBlock(J.Block block, ExecutionContext p) {            
-                if (!inMethod)
-                    return (J.Block) super.visitBlock(block, p); // NOT visiting anything anything above method
-                
-                BlockMark complexityMarker = getComplexityMarker(block);
-                if (complexityMarker == null)
-                    return (J.Block) super.visitBlock(block, p); // NOT visiting anything that's not marked by BlockComplexityVisitor markings
-                       
-                if (complexityMarker.fitsForExtractMethod)
-                    block = BlockCommentManager.markForRefactoring(block);
-                else
-                    ; //block = BlockCommentManager.markDebugInfo(block, complexityMarker);
-                
-                return (J.Block) super.visitBlock(block, p);
-            }
-
-            private BlockMark getComplexityMarker(J.Block block) {
-                Markers markers = block.getMarkers();
-                if (markers == null) 
-                    return null;
-
-                return markers.findFirst(BlockMark.class).orElse(null);
+            methodsMarked = 0;
+            extractedMethodNames.clear();
+            targetedMethods = TargetedMethods.of(compUnit, p, lineRangesByPath);
+            
+            event = new CompilationUnitEvent();
+            event.begin();
+            return true;
+        }
+        
+        public void exitCompilationUnit(J.CompilationUnit compUnit) {
+            if (event != null && event.shouldCommit()) {
+                event.recipe = MarkExtractMethodBlocksRecipe.class.getSimpleName();
+                event.sourcePath = compUnit.getSourcePath().toString();
+                event.methods = methodsMarked;
+                event.commit();
             }
+            event = null;
+        }
+        
+        @Override
+        public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, ExecutionContext p) {
+            if (targetedMethods != null && !targetedMethods.isTargeted(method))
+                return method;
             
-        };
+            int depth = DeepNesting.depthOf(method.getBody());
+            return DeepNesting.call(depth, 
+                                    () -> markMethod(method, depth, p));
+        }
         
+        private J.MethodDeclaration markMethod(J.MethodDeclaration method, int depth, ExecutionContext p) {
+            methodsMarked++;
+            
+            // step1: mark code blocks within this method (or leave it unmarked, if it is over budget)
+            method = new BlockComplexityVisitor(budget, methodsOverBudget)
+                            .visitMethodDeclaration(method, depth, p, getCursor().getParentOrThrow());
+            
+            // step2: put appropriate the comments on the marked blocks
+            inMethod = true;
+            MethodDeclaration ret = (J.MethodDeclaration) super.visitMethodDeclaration(method, p);
+            inMethod = false;
+            return ret;
+        }
+        
+        @Override
+        public J.Block visitBlock(J.Block block, ExecutionContext p) {            
+            if (!inMethod)
+                return (J.Block) super.visitBlock(block, p); // NOT visiting anything anything above method
+            
+            BlockMark complexityMarker = getComplexityMarker(block);
+            if (complexityMarker == null)
+                return (J.Block) super.visitBlock(block, p); // NOT visiting anything that's not marked by BlockComplexityVisitor markings
+                   
+            if (complexityMarker.fitsForExtractMethod)
+                block = BlockCommentManager.markForRefactoring(block, extractedMethodNames.nameOf(block));
+            else
+                ; //block = BlockCommentManager.markDebugInfo(block, complexityMarker);
+            
+            return (J.Block) super.visitBlock(block, p);
+        }
+
+        private BlockMark getComplexityMarker(J.Block block) {
+            Markers markers = block.getMarkers();
+            if (markers == null) 
+                return null;
+
+            return markers.findFirst(BlockMark.class).orElse(null);
+        }
+
     }
-    
 }
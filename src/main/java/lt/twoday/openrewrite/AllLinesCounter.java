@@ -1,26 +1,69 @@
 package lt.twoday.openrewrite;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
 
 import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.tree.J;
 import org.openrewrite.java.tree.Space;
 
 /***
- * counts ALL lines within a given tree (i.e. the newline symbols)
+ * counts ALL lines within a given tree, i.e. the line breaks between its tokens
+ * 
+ * Blank lines and comments in between two tokens make a single line break, and CRLF counts as one.
+ * A bounded count stops descending as soon as the limit is exceeded,
+ * and subtrees with an already known line span are not descended into at all.
  */
-public class AllLinesCounter extends JavaVisitor<AtomicInteger> {
+public class AllLinesCounter extends JavaVisitor<Integer> {
 
+    private static final ToIntFunction<Tree> NOTHING_KNOWN = tree -> -1;
+    
+    private final int limit;
+    private final ToIntFunction<Tree> knownLineSpans;
+    
+    private int count = 0;
+    
+    /*** @param knownLineSpans line span of a subtree or -1 when it is not known yet */
+    AllLinesCounter(int limit, ToIntFunction<Tree> knownLineSpans) {
+        this.limit = limit;
+        this.knownLineSpans = knownLineSpans;
+    }
+    
     public static int countLines(Tree tree) {
-        return new AllLinesCounter().reduce(tree, new AtomicInteger()).get();
+        return new AllLinesCounter(Integer.MAX_VALUE, NOTHING_KNOWN).count(tree);
+    }
+    
+    /*** whether the tree spans more than the given number of lines, counting no further than that */
+    public static boolean spansMoreThan(Tree tree, int lines) {
+        return new AllLinesCounter(lines, NOTHING_KNOWN).count(tree) > lines;
+    }
+    
+    int count(Tree tree) {
+        visit(tree, 0);
+        return count;
+    }
+    
+    @Override
+    public J visit(@Nullable Tree tree, Integer p) {
+        if (tree == null || count > limit)
+            return (J) tree;
+        
+        int known = knownLineSpans.applyAsInt(tree);
+        if (known >= 0) {
+            count += known;
+            return (J) tree;
+        }
+        
+        return super.visit(tree, p);
     }
     
     @Override
-    public Space visitSpace(Space space, Space.Location loc, AtomicInteger count) {
-        if (space.getWhitespace().contains("\n")) {
-            count.incrementAndGet();
+    public Space visitSpace(Space space, Space.Location loc, Integer p) {
+        if (count <= limit && space.getWhitespace().indexOf('\n') >= 0) {
+            count++;
         }
-        return super.visitSpace(space, loc, count);
+        return space;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,240 @@
+package lt.twoday.openrewrite;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.Statement;
+
+/***
+ * keeps deeply nested code (i.e. generated parsers with thousands of chained else-ifs) from overflowing the stack.
+ *
+ * Our own walks over the statements (depth, size, block marking) keep their work on a heap stack,
+ * but openrewrite's visitors, formatters and cursors the engines are built on recurse once per nesting level.
+ * Work on a deeply nested method is therefore handed to a worker thread whose stack fits the measured nesting depth,
+ * so the depth is limited by memory rather than the default thread stack. Workers are pooled by stack size,
+ * at most one per core for each, and reused by the following deep methods; methods of ordinary depth run inline on the calling thread.
+ */
+public class DeepNesting {
+
+    /*** nesting depth up to which any thread stack is assumed to be enough */
+    public static final int INLINE_DEPTH_LIMIT = 50;
+
+    // openrewrite recurses through the grouping blocks and else parts too, which take no level of their own
+    private static final long STACK_BYTES_PER_LEVEL = 48 * 1024;
+    private static final long MIN_STACK_BYTES = 4L * 1024 * 1024;
+    private static final long MAX_STACK_BYTES = 4L * 1024 * 1024 * 1024;
+
+    // every worker reserves its stack, up to MAX_STACK_BYTES, so they are limited to about one per core
+    private static final int MAX_WORKERS_PER_STACK_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    // workers by their stack size, a power of two
+    private static final ConcurrentMap<Long, ExecutorService> workers = new ConcurrentHashMap<>();
+
+    private static class DeepStackThread extends Thread {
+        final long stackSize;
+
+        DeepStackThread(Runnable work, long stackSize) {
+            super(null, work, "deep-nesting-worker-" + (stackSize >> 20) + "m", stackSize);
+            this.stackSize = stackSize;
+            setDaemon(true);
+        }
+    }
+
+    /***
+     * nesting depth of statements, measured without recursion: the root counts as level 1 and every statement
+     * nested in a control-flow statement (or directly in a block) one level deeper than it.
+     * Blocks, else parts and switch cases only group statements and add no level of their own,
+     * nor does a label to the statement it labels.
+     */
+    public static int depthOf(@Nullable Statement root) {
+        if (root == null)
+            return 0;
+
+        Walk walk = new Walk(root);
+
+        int ret = 0;
+        while (!walk.isEmpty()) {
+            int depth = walk.depth();
+            J node = walk.pop();
+            ret = Math.max(ret, depth);
+
+            pushChildren(walk, node, depth);
+        }
+        return ret;
+    }
+
+    private static boolean addsLevel(J parent, J child) {
+        if (child instanceof J.Block || child instanceof J.If.Else || child instanceof J.Case)
+            return false;
+
+        return !(parent instanceof J.Label);
+    }
+
+    /*** number of statement nodes (blocks, statements, else parts...) within the root, counted without recursion up to just above the limit */
+    public static int sizeOf(@Nullable Statement root, int limit) {
+        if (root == null)
+            return 0;
+
+        Walk walk = new Walk(root);
+
+        int ret = 0;
+        while (!walk.isEmpty() && ret <= limit) {
+            int depth = walk.depth();
+            J node = walk.pop();
+            ret++;
+
+            pushChildren(walk, node, depth);
+        }
+        return ret;
+    }
+
+    public static <T> T call(int depth, Supplier<T> work) {
+        if (depth <= INLINE_DEPTH_LIMIT)
+            return work.get();
+
+        long stackSize = stackSizeFor(depth);
+        Thread current = Thread.currentThread();
+        if (current instanceof DeepStackThread && ((DeepStackThread) current).stackSize >= stackSize)
+            return work.get();
+
+        Future<T> result = workers.computeIfAbsent(stackSize, DeepNesting::createWorkers)
+                                  .submit(work::get);
+        return getUninterruptibly(result);
+    }
+
+    /***
+     * at most {@link #MAX_WORKERS_PER_STACK_SIZE} workers, further deep methods queue for them;
+     * idle workers give their stack back after a while.
+     * A worker only ever waits for workers of a larger stack, so queueing can not deadlock.
+     */
+    private static ExecutorService createWorkers(long stackSize) {
+        ThreadPoolExecutor ret = new ThreadPoolExecutor(MAX_WORKERS_PER_STACK_SIZE, MAX_WORKERS_PER_STACK_SIZE,
+                                                        WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                        new LinkedBlockingQueue<>(),
+                                                        r -> new DeepStackThread(r, stackSize));
+        ret.allowCoreThreadTimeOut(true);
+        return ret;
+    }
+
+    /*** the stack for the depth rounded up to a power of two, so that workers are shared by methods of similar depth */
+    private static long stackSizeFor(int depth) {
+        long needed = Math.max(MIN_STACK_BYTES, depth * STACK_BYTES_PER_LEVEL);
+        return Math.min(MAX_STACK_BYTES, Long.highestOneBit(needed - 1) << 1);
+    }
+
+    private static <T> T getUninterruptibly(Future<T> result) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return result.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            throw new IllegalStateException(t);
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /*** pushes the statement children of the node on the walk, one level deeper where they add one */
+    private static void pushChildren(Walk walk, J node, int depth) {
+        if (node instanceof J.Block) {
+            for (Statement st: ((J.Block) node).getStatements())
+                walk.pushChild(node, st, depth);
+        }
+        else if (node instanceof J.If) {
+            J.If iff = (J.If) node;
+            walk.pushChild(node, iff.getThenPart(), depth);
+            walk.pushChild(node, iff.getElsePart(), depth);
+        }
+        else if (node instanceof J.If.Else)
+            walk.pushChild(node, ((J.If.Else) node).getBody(), depth);
+        else if (node instanceof J.ForLoop)
+            walk.pushChild(node, ((J.ForLoop) node).getBody(), depth);
+        else if (node instanceof J.ForEachLoop)
+            walk.pushChild(node, ((J.ForEachLoop) node).getBody(), depth);
+        else if (node instanceof J.WhileLoop)
+            walk.pushChild(node, ((J.WhileLoop) node).getBody(), depth);
+        else if (node instanceof J.DoWhileLoop)
+            walk.pushChild(node, ((J.DoWhileLoop) node).getBody(), depth);
+        else if (node instanceof J.Try) {
+            J.Try tryy = (J.Try) node;
+            walk.pushChild(node, tryy.getBody(), depth);
+            walk.pushChild(node, tryy.getFinally(), depth);
+            for (J.Try.Catch ccatch: tryy.getCatches())
+                walk.pushChild(node, ccatch.getBody(), depth);
+        }
+        else if (node instanceof J.Switch)
+            walk.pushChild(node, ((J.Switch) node).getCases(), depth);
+        else if (node instanceof J.Case) {
+            J.Case ccase = (J.Case) node;
+            for (Statement st: ccase.getStatements())
+                walk.pushChild(node, st, depth);
+            walk.pushChild(node, ccase.getBody(), depth);
+        }
+        else if (node instanceof J.Label)
+            walk.pushChild(node, ((J.Label) node).getStatement(), depth);
+        else if (node instanceof J.Synchronized)
+            walk.pushChild(node, ((J.Synchronized) node).getBody(), depth);
+    }
+
+    /*** the statement nodes still to visit and their nesting depths, kept on plain arrays: nothing is allocated per node */
+    private static class Walk {
+
+        private J[] nodes = new J[64];
+        private int[] depths = new int[64];
+        private int size = 0;
+
+        Walk(J root) {
+            nodes[size] = root;
+            depths[size++] = 1;
+        }
+
+        void pushChild(J parent, @Nullable J child, int parentDepth) {
+            if (child == null)
+                return;
+
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                depths = Arrays.copyOf(depths, size * 2);
+            }
+            nodes[size] = child;
+            depths[size++] = addsLevel(parent, child) ? parentDepth + 1 : parentDepth;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /*** the depth of the node {@link #pop()} returns next */
+        int depth() {
+            return depths[size - 1];
+        }
+
+        J pop() {
+            J ret = nodes[--size];
+            nodes[size] = null;
+            return ret;
+        }
+    }
+}
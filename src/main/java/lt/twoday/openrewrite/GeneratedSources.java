@@ -0,0 +1,231 @@
+package lt.twoday.openrewrite;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.PrintOutputCapture;
+import org.openrewrite.java.tree.Comment;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.Space;
+import org.openrewrite.java.tree.TextComment;
+
+/***
+ * recognizes generated sources (protobuf, JAXB, ANTLR, JavaCC, Thrift... output) by their header only:
+ * the comments before the first type declaration and the {@code @Generated} annotation on it.
+ * The runner checks the raw source before parsing, the recipes the parsed one; both look at the same parts.
+ *
+ * Rewriting such sources is pointless, they get overwritten once generated again.
+ */
+public class GeneratedSources {
+
+    /*** how much of a source file is looked at for a generator header */
+    public static final int HEADER_CHARS = 8 * 1024;
+
+    private static final String SKIPPED_KEY = GeneratedSources.class.getName() + ".skipped";
+
+    static final List<String> GENERATOR_HEADERS = Arrays.asList(
+            "DO NOT EDIT",
+            "Generated by the protocol buffer compiler",
+            "Architecture for XML Binding",
+            "Implementation of JAXB",
+            "by ANTLR",
+            "Generated By:JavaCC",
+            "Autogenerated by Thrift",
+            "@Generated");
+
+    /***
+     * whether the start of a source file (its first {@link #HEADER_CHARS} characters will do) looks generated,
+     * judging by the same parts as {@link #isGenerated(J.CompilationUnit)}: the comments before the package declaration
+     * and before the first type declaration, and the annotations leading the first type.
+     * Code, string literals and comments between the package declaration and the imports do not count.
+     */
+    public static boolean hasGeneratedHeader(CharSequence source) {
+        int end = Math.min(source.length(), HEADER_CHARS);
+        // nothing but comments so far: they are in the prefix of the compilation unit
+        boolean leading = true;
+        // a generator comment since the last package or import declaration
+        boolean pending = false;
+
+        int i = 0;
+        while (i < end) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            int commentEnd = skipComment(source, i, end);
+            if (commentEnd > i) {
+                pending |= isGeneratorComment(source.subSequence(i, commentEnd));
+                i = commentEnd;
+                continue;
+            }
+
+            if (startsWithWord(source, i, end, "package") || startsWithWord(source, i, end, "import")) {
+                if (pending && leading)
+                    return true;
+
+                leading = false;
+                pending = false;
+                i = indexOf(source, ';', i, end) + 1;
+                continue;
+            }
+
+            // the first type declaration: its prefix, then its leading annotations
+            return pending || hasGeneratedAnnotation(source, i, end);
+        }
+        return pending && leading;
+    }
+
+    /*** whether the annotations starting at {@code i}, up to the first other token, include {@code @Generated} */
+    private static boolean hasGeneratedAnnotation(CharSequence source, int i, int end) {
+        while (i < end && source.charAt(i) == '@') {
+            int nameStart = i + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < end && (Character.isJavaIdentifierPart(source.charAt(nameEnd)) || source.charAt(nameEnd) == '.'))
+                nameEnd++;
+
+            String name = source.subSequence(nameStart, nameEnd).toString();
+            if ("Generated".equals(name.substring(name.lastIndexOf('.') + 1)))
+                return true;
+
+            i = skipSpaceAndComments(source, nameEnd, end);
+            if (i < end && source.charAt(i) == '(')
+                i = skipSpaceAndComments(source, skipArguments(source, i, end), end);
+        }
+        return false;
+    }
+
+    /*** the index just after the comment starting at {@code i}, or {@code i} if none starts there */
+    private static int skipComment(CharSequence source, int i, int end) {
+        if (i + 1 >= end || source.charAt(i) != '/')
+            return i;
+
+        if (source.charAt(i + 1) == '/')
+            return indexOf(source, '\n', i, end);
+
+        if (source.charAt(i + 1) == '*') {
+            for (int j=i + 2; j + 1 < end; j++)
+                if (source.charAt(j) == '*' && source.charAt(j + 1) == '/')
+                    return j + 2;
+            return end;
+        }
+        return i;
+    }
+
+    private static int skipSpaceAndComments(CharSequence source, int i, int end) {
+        while (i < end) {
+            if (Character.isWhitespace(source.charAt(i)))
+                i++;
+            else {
+                int commentEnd = skipComment(source, i, end);
+                if (commentEnd == i)
+                    return i;
+                i = commentEnd;
+            }
+        }
+        return end;
+    }
+
+    /*** the index just after the parenthesized arguments starting at {@code i}, string and char literals skipped */
+    private static int skipArguments(CharSequence source, int i, int end) {
+        int depth = 0;
+        while (i < end) {
+            char c = source.charAt(i);
+            if (c == '"' || c == '\'') {
+                for (i++; i < end && source.charAt(i) != c; i++)
+                    if (source.charAt(i) == '\\')
+                        i++;
+            } else if (c == '(')
+                depth++;
+            else if (c == ')' && --depth == 0)
+                return i + 1;
+            i++;
+        }
+        return end;
+    }
+
+    private static boolean startsWithWord(CharSequence source, int i, int end, String word) {
+        int wordEnd = i + word.length();
+        if (wordEnd > end)
+            return false;
+
+        for (int j=0; j < word.length(); j++)
+            if (source.charAt(i + j) != word.charAt(j))
+                return false;
+
+        return wordEnd == end || !Character.isJavaIdentifierPart(source.charAt(wordEnd));
+    }
+
+    /*** the index of the character, or {@code end} if it does not occur before */
+    private static int indexOf(CharSequence source, char c, int from, int end) {
+        for (int i=from; i < end; i++)
+            if (source.charAt(i) == c)
+                return i;
+        return end;
+    }
+
+    private static boolean isGeneratorComment(CharSequence comment) {
+        String text = comment.toString();
+        for (String marker: GENERATOR_HEADERS)
+            if (text.contains(marker))
+                return true;
+
+        return false;
+    }
+
+    /*** {@link #isGenerated(J.CompilationUnit)}, recording in the execution context that the source is left alone if it is */
+    public static boolean isGenerated(J.CompilationUnit compUnit, ExecutionContext executionContext) {
+        if (!isGenerated(compUnit))
+            return false;
+
+        executionContext.putMessage(SKIPPED_KEY, true);
+        return true;
+    }
+
+    /*** whether a recipe left the source the execution context is used for alone, as generated */
+    public static boolean isSkipped(ExecutionContext executionContext) {
+        return executionContext.getMessage(SKIPPED_KEY, false);
+    }
+
+    public static boolean isGenerated(J.CompilationUnit compUnit) {
+        if (hasGeneratedHeader(compUnit.getPrefix()))
+            return true;
+
+        if (compUnit.getPackageDeclaration() != null && hasGeneratedHeader(compUnit.getPackageDeclaration().getPrefix()))
+            return true;
+
+        if (compUnit.getClasses().isEmpty())
+            return false;
+
+        J.ClassDeclaration firstClass = compUnit.getClasses().get(0);
+        if (hasGeneratedHeader(firstClass.getPrefix()))
+            return true;
+
+        for (J.Annotation annotation: firstClass.getLeadingAnnotations())
+            if ("Generated".equals(annotation.getSimpleName()))
+                return true;
+
+        return false;
+    }
+
+    private static boolean hasGeneratedHeader(Space space) {
+        for (Comment comment: space.getComments())
+            if (isGeneratorComment(textOf(comment)))
+                return true;
+
+        return false;
+    }
+
+    /*** javadoc comments included, like the header check of the raw source */
+    private static String textOf(Comment comment) {
+        if (comment instanceof TextComment)
+            return ((TextComment) comment).getText();
+
+        PrintOutputCapture<Integer> out = new PrintOutputCapture<>(0);
+        comment.printComment(new Cursor(null, Cursor.ROOT_VALUE), out);
+        return out.getOut();
+    }
+}
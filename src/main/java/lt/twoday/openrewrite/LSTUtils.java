@@ -4,7 +4,9 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.JavaVisitor;
 import org.openrewrite.java.tree.Expression;
 import org.openrewrite.java.tree.J;
 import org.openrewrite.java.tree.J.If.Else;
@@ -114,6 +116,18 @@ public class LSTUtils {
         }.visit(j, 0);
     }
 
+    /***
+     * 64 bit FNV-1a hash of the structure of a subtree: node kinds, names, literals and operators.
+     * Whitespace, comments, ids, markers and types are ignored, so the same code hashes the same
+     * wherever it stands and however it is formatted. Unlike {@link #removeAllSpace(J)}, copies nothing:
+     * the visitor's cursor is the only allocation per node.
+     */
+    public static long structuralHash(@Nullable J j) {
+        StructuralHasher hasher = new StructuralHasher();
+        hasher.visit(j, 0);
+        return hasher.hash;
+    }
+
     public static boolean isThrow(Statement s) {
         if (s == null)
             return false;
@@ -140,4 +154,85 @@ public class LSTUtils {
     public static boolean isThrow(Else elsePart) {
         return elsePart != null && elsePart.getBody() != null && isThrow(elsePart.getBody());
     }
+
+    private static class StructuralHasher extends JavaVisitor<Integer> {
+
+        private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+
+        private static final int NODE_END = -1;
+
+        // the hash of each node class name, computed once per class rather than per node
+        private static final ClassValue<Long> NODE_KINDS = new ClassValue<Long>() {
+            @Override
+            protected Long computeValue(Class<?> type) {
+                StructuralHasher hasher = new StructuralHasher();
+                hasher.mix(type.getName());
+                return hasher.hash;
+            }
+        };
+
+        long hash = FNV_OFFSET_BASIS;
+
+        @Override
+        public J visit(@Nullable Tree tree, Integer p) {
+            if (tree == null)
+                return null;
+
+            mix(NODE_KINDS.get(tree.getClass()));
+            mixLeafValues(tree);
+            J ret = super.visit(tree, p);
+            mix(NODE_END);
+            return ret;
+        }
+
+        @Override
+        public Space visitSpace(Space space, Space.Location loc, Integer p) {
+            return space;
+        }
+
+        /*** what the node holds besides its child nodes */
+        private void mixLeafValues(Tree tree) {
+            if (tree instanceof J.Identifier)
+                mix(((J.Identifier) tree).getSimpleName());
+            else if (tree instanceof J.Literal) {
+                J.Literal literal = (J.Literal) tree;
+                mix(literal.getValueSource() != null ? literal.getValueSource() : String.valueOf(literal.getValue()));
+            }
+            else if (tree instanceof J.Binary)
+                mix(((J.Binary) tree).getOperator().ordinal());
+            else if (tree instanceof J.Unary)
+                mix(((J.Unary) tree).getOperator().ordinal());
+            else if (tree instanceof J.AssignmentOperation)
+                mix(((J.AssignmentOperation) tree).getOperator().ordinal());
+            else if (tree instanceof J.Modifier)
+                mix(((J.Modifier) tree).getType().ordinal());
+            else if (tree instanceof J.Primitive)
+                mix(((J.Primitive) tree).getType().ordinal());
+            else if (tree instanceof J.ClassDeclaration.Kind)
+                mix(((J.ClassDeclaration.Kind) tree).getType().ordinal());
+            else if (tree instanceof J.Import)
+                mix(((J.Import) tree).isStatic() ? 1 : 0);
+        }
+
+        private void mix(String value) {
+            for (int i=0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= FNV_PRIME;
+            }
+            mix(value.length());
+        }
+
+        private void mix(long value) {
+            mix((int) value);
+            mix((int) (value >>> 32));
+        }
+
+        private void mix(int value) {
+            for (int shift=0; shift < 32; shift += 8) {
+                hash ^= (value >>> shift) & 0xFF;
+                hash *= FNV_PRIME;
+            }
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package lt.twoday.openrewrite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.internal.lang.Nullable;
+
+/***
+ * lines of a source file to target (edited hunks, an IDE selection...): sorted, merged, 1-based inclusive ranges.
+ *
+ * Recipes find the ranges of the file being visited in the execution context, where a runner puts them per file,
+ * or in their own option, keyed by source path.
+ */
+public class LineRanges {
+
+    private static final String CONTEXT_KEY = LineRanges.class.getName();
+
+    private final int[] firsts;
+    private final int[] lasts;
+
+    private LineRanges(int[] firsts, int[] lasts) {
+        this.firsts = firsts;
+        this.lasts = lasts;
+    }
+
+    /*** from {first, last} pairs, in any order and overlapping */
+    public static LineRanges of(List<int[]> ranges) {
+        List<int[]> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingInt(range -> range[0]));
+
+        int[] firsts = new int[sorted.size()];
+        int[] lasts = new int[sorted.size()];
+        int count = 0;
+        for (int[] range: sorted) {
+            if (range[1] < range[0])
+                throw new IllegalArgumentException("not a line range: " + range[0] + "-" + range[1]);
+
+            if (count > 0 && range[0] <= lasts[count-1] + 1)
+                lasts[count-1] = Math.max(lasts[count-1], range[1]);
+            else {
+                firsts[count] = range[0];
+                lasts[count] = range[1];
+                count++;
+            }
+        }
+        return new LineRanges(Arrays.copyOf(firsts, count), Arrays.copyOf(lasts, count));
+    }
+
+    /*** from i.e. {@code 10-20,35,40-41} */
+    public static LineRanges parse(String ranges) {
+        List<int[]> ret = new ArrayList<>();
+        for (String range: ranges.split(",")) {
+            String[] bounds = range.trim().split("-");
+            int first = Integer.parseInt(bounds[0].trim());
+            int last = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : first;
+            ret.add(new int[] {first, last});
+        }
+        return of(ret);
+    }
+
+    /*** from i.e. {@code src/main/java/A.java:10-20,35}, keyed by the source path */
+    public static Map<String, LineRanges> parseByPath(List<String> pathRanges) {
+        Map<String, LineRanges> ret = new HashMap<>();
+        for (String pathRange: pathRanges) {
+            int colon = pathRange.lastIndexOf(':');
+            if (colon < 0)
+                throw new IllegalArgumentException("expected <source path>:<line ranges>, got " + pathRange);
+
+            ret.put(pathRange.substring(0, colon).trim(), parse(pathRange.substring(colon + 1)));
+        }
+        return ret;
+    }
+
+    public boolean overlaps(int first, int last) {
+        // the last range starting at or before the given last line
+        int low = 0, high = firsts.length - 1, found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (firsts[middle] <= last) {
+                found = middle;
+                low = middle + 1;
+            } else
+                high = middle - 1;
+        }
+        return found >= 0 && lasts[found] >= first;
+    }
+
+    public boolean isEmpty() {
+        return firsts.length == 0;
+    }
+
+    /*** the ranges of the source file the execution context is used for, if a runner put them there */
+    @Nullable
+    public static LineRanges in(ExecutionContext executionContext) {
+        return executionContext.getMessage(CONTEXT_KEY);
+    }
+
+    public static void put(ExecutionContext executionContext, LineRanges ranges) {
+        executionContext.putMessage(CONTEXT_KEY, ranges);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ret = new StringBuilder();
+        for (int i=0; i < firsts.length; i++) {
+            if (i > 0)
+                ret.append(',');
+            ret.append(firsts[i]);
+            if (lasts[i] != firsts[i])
+                ret.append('-').append(lasts[i]);
+        }
+        return ret.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package lt.twoday.openrewrite;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.Statement;
+
+import lombok.Value;
+
+/***
+ * how much work a recipe may spend on a single method: statement nodes, nesting depth and wall time.
+ *
+ * Nodes and nesting are checked before any work is done, the wall time is checked while the work goes on.
+ * A method over budget is left as it was and reported in {@link MethodsOverBudget}.
+ */
+@Value
+public class MethodBudget {
+
+    public static final MethodBudget UNLIMITED = new MethodBudget(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    int maxNodes;
+    int maxNesting;
+    long maxMillis;
+
+    /*** a missing limit means no limit */
+    public static MethodBudget of(@Nullable Integer maxNodes, @Nullable Integer maxNesting, @Nullable Long maxMillis) {
+        if (maxNodes == null && maxNesting == null && maxMillis == null)
+            return UNLIMITED;
+
+        return new MethodBudget(maxNodes == null ? Integer.MAX_VALUE : maxNodes,
+                                maxNesting == null ? Integer.MAX_VALUE : maxNesting,
+                                maxMillis == null ? Long.MAX_VALUE : maxMillis);
+    }
+
+    /*** why a method body of the given nesting depth is over budget, or null if it is not */
+    @Nullable
+    public String exceededBy(int nesting, Statement body) {
+        if (nesting > maxNesting)
+            return "nesting depth " + nesting + " exceeds " + maxNesting;
+
+        if (maxNodes < Integer.MAX_VALUE && DeepNesting.sizeOf(body, maxNodes) > maxNodes)
+            return "more than " + maxNodes + " nodes";
+
+        return null;
+    }
+
+    public Deadline start() {
+        return new Deadline(maxMillis == Long.MAX_VALUE 
+                                ? Long.MAX_VALUE 
+                                : System.nanoTime() + maxMillis * 1_000_000);
+    }
+
+    public String timeExceeded() {
+        return "took longer than " + maxMillis + " ms";
+    }
+
+    /*** wall time limit of the work on one method; once passed, it stays passed */
+    public static class Deadline {
+
+        private final long deadlineNanos;
+        private boolean passed = false;
+
+        private Deadline(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public boolean passed() {
+            if (!passed && deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0)
+                passed = true;
+
+            return passed;
+        }
+    }
+}
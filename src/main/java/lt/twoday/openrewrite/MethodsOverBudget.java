@@ -0,0 +1,59 @@
+package lt.twoday.openrewrite;
+
+import org.openrewrite.Column;
+import org.openrewrite.Cursor;
+import org.openrewrite.DataTable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.java.tree.J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Value;
+
+/***
+ * methods a recipe left untouched because they were over its {@link MethodBudget}
+ */
+public class MethodsOverBudget extends DataTable<MethodsOverBudget.Row> {
+
+    private static final Logger log  = LoggerFactory.getLogger(MethodsOverBudget.class);
+
+    public MethodsOverBudget(Recipe recipe) {
+        super(recipe,
+              "Methods over budget",
+              "Methods left untouched because they were too big, too deeply nested or took too long.");
+    }
+
+    /*** @param cursor a cursor within the compilation unit and class of the method */
+    public void record(ExecutionContext executionContext, Cursor cursor, J.MethodDeclaration method, String reason) {
+        J.CompilationUnit compUnit = cursor.firstEnclosing(J.CompilationUnit.class);
+        J.ClassDeclaration classDeclaration = cursor.firstEnclosing(J.ClassDeclaration.class);
+
+        Row row = new Row(compUnit == null ? "" : compUnit.getSourcePath().toString(),
+                          classDeclaration == null ? "" : classDeclaration.getSimpleName(),
+                          method.getSimpleName(),
+                          reason);
+
+        log.warn("left {}.{} in {} untouched: {}", row.getClassName(), row.getMethodName(), row.getSourcePath(), reason);
+        insertRow(executionContext, row);
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The source file of the method.")
+        String sourcePath;
+
+        @Column(displayName = "Class",
+                description = "The simple name of the class declaring the method.")
+        String className;
+
+        @Column(displayName = "Method",
+                description = "The name of the method left untouched.")
+        String methodName;
+
+        @Column(displayName = "Reason",
+                description = "The limit of the budget the method exceeded.")
+        String reason;
+    }
+}
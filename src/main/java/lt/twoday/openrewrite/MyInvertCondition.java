@@ -18,48 +18,75 @@ package lt.twoday.openrewrite;
 import org.openrewrite.Cursor;
 import org.openrewrite.ExecutionContext;
 import org.openrewrite.InMemoryExecutionContext;
-import org.openrewrite.Tree;
-import org.openrewrite.internal.lang.Nullable;
-import org.openrewrite.java.JavaVisitor;
 import org.openrewrite.java.cleanup.SimplifyBooleanExpressionVisitor;
 import org.openrewrite.java.tree.*;
 import org.openrewrite.java.tree.J.Unary;
 import org.openrewrite.marker.Markers;
 
+import lt.twoday.openrewrite.jfr.InvertConditionEvent;
+
 import static org.openrewrite.Tree.randomId;
 
 /***
- * properly inverts conditions, including the instance of.
+ * properly inverts conditions, including the instance of, ternaries and assignments.
  * 
  * (a copy from a standard openrewrite InvertCondition with a special case for instanceof)
+ * 
+ * The condition is negated structurally at its top node in one pass,
+ * and the result is simplified once, at the root.
  */
-public class MyInvertCondition extends JavaVisitor<ExecutionContext> {
+public class MyInvertCondition {
 
-    @SuppressWarnings("unchecked")
     public static <J2 extends J> J.ControlParentheses<J2> invert(J.ControlParentheses<J2> controlParentheses, Cursor cursor) {
-        //noinspection ConstantConditions
-        return (J.ControlParentheses<J2>) new MyInvertCondition()
-                .visit(controlParentheses, new InMemoryExecutionContext(), cursor.getParentOrThrow());
+        return invert(controlParentheses, cursor, new InMemoryExecutionContext());
     }
 
-    @Nullable
-    @Override
-    public J visit(@Nullable Tree tree, ExecutionContext ctx) {
-        J t;
-        if (tree instanceof Expression && 
-          !(tree instanceof J.ControlParentheses) && 
-          !(tree instanceof J.Binary)) {            
-            t = negate((Expression) tree);
-        } else {
-            t = super.visit(tree, ctx);
+    @SuppressWarnings("unchecked")
+    public static <J2 extends J> J.ControlParentheses<J2> invert(J.ControlParentheses<J2> controlParentheses, Cursor cursor, ExecutionContext ctx) {
+        J2 condition = controlParentheses.getTree();
+        if (!(condition instanceof Expression))
+            return controlParentheses;
+        
+        InvertConditionEvent event = new InvertConditionEvent();
+        event.begin();
+        
+        J.ControlParentheses<J2> negated = controlParentheses.withTree((J2) negate((Expression) condition));
+        
+        //noinspection ConstantConditions
+        J.ControlParentheses<J2> ret = (J.ControlParentheses<J2>) new SimplifyBooleanExpressionVisitor()
+                .visit(negated, ctx, cursor.getParentOrThrow());
+        
+        if (event.shouldCommit()) {
+            event.terms = countTerms((Expression) condition);
+            event.commit();
         }
+        return ret;
+    }
 
-        return (J) new SimplifyBooleanExpressionVisitor().visit(t, ctx, getCursor().getParentOrThrow());
+    /*** operands of the {@code &&} and {@code ||} operators */
+    private static int countTerms(Expression expression) {
+        if (expression instanceof J.Parentheses && ((J.Parentheses<?>) expression).getTree() instanceof Expression)
+            return countTerms((Expression) ((J.Parentheses<?>) expression).getTree());
+        
+        if (expression instanceof J.Binary) {
+            J.Binary binary = (J.Binary) expression;
+            if (binary.getOperator() == J.Binary.Type.And || binary.getOperator() == J.Binary.Type.Or)
+                return countTerms(binary.getLeft()) + countTerms(binary.getRight());
+        }
+        
+        return 1;
     }
 
-    private Expression negate(Expression expression) {
-        if (expression instanceof J.InstanceOf)
-            return notInstanceof((J.InstanceOf)expression);
+    public static Expression negate(Expression expression) {
+        if (expression instanceof J.Binary)
+            return negateBinary((J.Binary)expression);
+        
+        // binding looser than the negation
+        if (expression instanceof J.InstanceOf
+         || expression instanceof J.Ternary
+         || expression instanceof J.Assignment
+         || expression instanceof J.AssignmentOperation)
+            return notParenthesized(expression);
         
         if (expression instanceof J.Unary)
             return notUnary((J.Unary)expression);
@@ -67,8 +94,7 @@ public class MyInvertCondition extends JavaVisitor<ExecutionContext> {
         return notExpression(expression);
     }
 
-    @Override
-    public J visitBinary(J.Binary binary, ExecutionContext ctx) {
+    private static Expression negateBinary(J.Binary binary) {
         switch (binary.getOperator()) {
             case LessThan:
                 return binary.withOperator(J.Binary.Type.GreaterThanOrEqual);
@@ -83,11 +109,11 @@ public class MyInvertCondition extends JavaVisitor<ExecutionContext> {
             case NotEqual:
                 return binary.withOperator(J.Binary.Type.Equal);
             default:
-                return notBinary(binary);
+                return notParenthesized(binary);
         }
     }
 
-    private Unary notExpression(Expression expression) {
+    private static Unary notExpression(Expression expression) {
         return new J.Unary(
                         randomId(), 
                         expression.getPrefix(), 
@@ -98,23 +124,7 @@ public class MyInvertCondition extends JavaVisitor<ExecutionContext> {
                 );
     }
     
-    private Unary notInstanceof(J.InstanceOf expression) {
-        return new J.Unary(
-                        randomId(), 
-                        expression.getPrefix(), 
-                        Markers.EMPTY,
-                        JLeftPadded.build(J.Unary.Type.Not), 
-                        new J.Parentheses<>(
-                                randomId(),
-                                Space.EMPTY,
-                                Markers.EMPTY,
-                                JRightPadded.build(expression.withPrefix(Space.EMPTY))
-                        ),
-                        expression.getType()
-                );
-    }
-    
-    private Expression notUnary(J.Unary unary) {
+    private static Expression notUnary(J.Unary unary) {
         switch(unary.getOperator()) {
         case Not:
             return maybeUnwrap(unary.getExpression());
@@ -123,25 +133,25 @@ public class MyInvertCondition extends JavaVisitor<ExecutionContext> {
         }
     }
     
-    private Expression maybeUnwrap(Expression expression) {
+    private static Expression maybeUnwrap(Expression expression) {
         if (expression instanceof J.Parentheses<?>)
             return ((J.Parentheses<?>)expression).unwrap();
         return expression;
     }
 
-    private Unary notBinary(J.Binary binary) {
+    private static Unary notParenthesized(Expression expression) {
         return new J.Unary(
                         randomId(),
-                        binary.getPrefix(),
+                        expression.getPrefix(),
                         Markers.EMPTY,
                         JLeftPadded.build(J.Unary.Type.Not),
                         new J.Parentheses<>(
                                 randomId(),
                                 Space.EMPTY,
                                 Markers.EMPTY,
-                                JRightPadded.build(binary.withPrefix(Space.EMPTY))
+                                JRightPadded.build(expression.withPrefix(Space.EMPTY))
                         ),
-                        binary.getType()
+                        expression.getType()
                 );
     }
 }
@@ -0,0 +1,186 @@
+package lt.twoday.openrewrite;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.J.If.Else;
+import org.openrewrite.java.tree.Statement;
+
+/***
+ * memoizes line span, emptiness, guaranteed return and single throw of subtrees, keyed by tree identity.
+ *
+ * Nothing is computed up front: each fact is worked out when a rule first asks for it,
+ * looking only at the children that fact depends on (i.e. the last statement of a block for a guaranteed return),
+ * and is a plain lookup from then on. Line spans are only counted as far as the question asked needs.
+ * Freshly rewritten nodes re-use the facts already known for their unchanged children.
+ */
+public class SubtreeMetrics {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte NO = 1;
+    private static final byte YES = 2;
+
+    private static class Facts {
+        byte empty = UNKNOWN;
+        byte guaranteedReturn = UNKNOWN;
+        byte singleThrow = UNKNOWN;
+
+        // exact line span, or -1 while only a lower bound is known
+        int lineSpan = -1;
+        // the subtree is known to span more than this many lines
+        int spansMoreThan = -1;
+    }
+
+    private final Map<Tree, Facts> cache = new IdentityHashMap<>();
+
+    // nodes looked at so far, either to work out a fact or to count lines
+    private int visits = 0;
+
+    /***
+     * same as {@link AllLinesCounter#spansMoreThan(Tree, int)}: a subtree is only counted up to the given number of lines,
+     * re-using the spans known for its children
+     */
+    public boolean spansMoreThan(@Nullable Tree tree, int lines) {
+        if (tree == null)
+            return false;
+
+        Facts facts = factsOf(tree);
+        if (facts.lineSpan >= 0)
+            return facts.lineSpan > lines;
+        if (facts.spansMoreThan >= lines)
+            return true;
+
+        int count = new AllLinesCounter(lines, this::knownLineSpan).count(tree);
+        if (count > lines)
+            facts.spansMoreThan = lines;
+        else
+            facts.lineSpan = count; // counted to the end
+
+        return count > lines;
+    }
+
+    private int knownLineSpan(Tree tree) {
+        visits++;
+        Facts known = cache.get(tree);
+        return known == null ? -1 : known.lineSpan;
+    }
+
+    public boolean isEmpty(@Nullable Statement statement) {
+        return statement == null || isEmptyTree(statement);
+    }
+
+    public boolean isEmpty(@Nullable Else elsePart) {
+        return elsePart == null || isEmptyTree(elsePart);
+    }
+
+    public boolean hasGuaranteedReturn(@Nullable Statement statement) {
+        return statement != null && hasGuaranteedReturnTree(statement);
+    }
+
+    public boolean isThrow(@Nullable Statement statement) {
+        return statement != null && isThrowTree(statement);
+    }
+
+    public boolean isThrow(@Nullable Else elsePart) {
+        return elsePart != null && isThrowTree(elsePart);
+    }
+
+    /*** nodes looked at so far */
+    public int visits() {
+        return visits;
+    }
+
+    private Facts factsOf(Tree tree) {
+        Facts ret = cache.get(tree);
+        if (ret == null) {
+            ret = new Facts();
+            cache.put(tree, ret);
+        }
+        return ret;
+    }
+
+    private boolean isEmptyTree(Tree tree) {
+        Facts facts = factsOf(tree);
+        if (facts.empty == UNKNOWN) {
+            visits++;
+            facts.empty = computeEmpty(tree) ? YES : NO;
+        }
+        return facts.empty == YES;
+    }
+
+    private boolean hasGuaranteedReturnTree(Tree tree) {
+        Facts facts = factsOf(tree);
+        if (facts.guaranteedReturn == UNKNOWN) {
+            visits++;
+            facts.guaranteedReturn = computeGuaranteedReturn(tree) ? YES : NO;
+        }
+        return facts.guaranteedReturn == YES;
+    }
+
+    private boolean isThrowTree(Tree tree) {
+        Facts facts = factsOf(tree);
+        if (facts.singleThrow == UNKNOWN) {
+            visits++;
+            facts.singleThrow = computeSingleThrow(tree) ? YES : NO;
+        }
+        return facts.singleThrow == YES;
+    }
+
+    private boolean computeEmpty(Tree tree) {
+        if (tree instanceof J.Empty)
+            return true;
+
+        if (tree instanceof J.Block) {
+            for (Statement st: ((J.Block) tree).getStatements())
+                if (!isEmpty(st))
+                    return false;
+            return true;
+        }
+
+        if (tree instanceof Else)
+            return isEmpty(((Else) tree).getBody());
+
+        return false;
+    }
+
+    private boolean computeGuaranteedReturn(Tree tree) {
+        if (tree instanceof J.Return || tree instanceof J.Throw)
+            return true;
+
+        if (tree instanceof J.Block) {
+            List<Statement> statements = ((J.Block) tree).getStatements();
+            return !statements.isEmpty() && hasGuaranteedReturn(statements.get(statements.size()-1));
+        }
+
+        if (tree instanceof J.If) {
+            J.If iff = (J.If) tree;
+            return hasGuaranteedReturn(iff.getThenPart())
+                && iff.getElsePart() != null
+                && hasGuaranteedReturn(iff.getElsePart().getBody());
+        }
+
+        if (tree instanceof Else)
+            return hasGuaranteedReturn(((Else) tree).getBody());
+
+        return false;
+    }
+
+    private boolean computeSingleThrow(Tree tree) {
+        if (tree instanceof J.Throw)
+            return true;
+
+        if (tree instanceof J.Block) {
+            List<Statement> statements = ((J.Block) tree).getStatements();
+            return statements.size() == 1 && isThrow(statements.get(0));
+        }
+
+        if (tree instanceof Else)
+            return isThrow(((Else) tree).getBody());
+
+        return false;
+    }
+}
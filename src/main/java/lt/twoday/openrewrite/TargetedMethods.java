@@ -0,0 +1,116 @@
+package lt.twoday.openrewrite;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.PrintOutputCapture;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaPrinter;
+import org.openrewrite.java.tree.J;
+
+/***
+ * the methods of a compilation unit overlapping the targeted line ranges.
+ *
+ * Method line spans are found by printing the compilation unit once into an output
+ * that only counts lines and keeps no text; a span starts at the first line of the method's
+ * doc comment or annotations and ends at its closing brace.
+ * Methods not known at that time (i.e. created by a recipe) count as targeted.
+ *
+ * The spans are worked out once per compilation unit and kept in the execution context by its id,
+ * which a rewritten compilation unit keeps: a recipe following another one (in a runner, a recipe list or a fused recipe)
+ * targets the methods by the lines of the original source, not by where a previous rewrite moved them.
+ */
+public class TargetedMethods {
+
+    private static final String CONTEXT_KEY = TargetedMethods.class.getName();
+
+    private final LineRanges ranges;
+    private final Map<UUID, int[]> spans;
+
+    private TargetedMethods(LineRanges ranges, Map<UUID, int[]> spans) {
+        this.ranges = ranges;
+        this.spans = spans;
+    }
+
+    /***
+     * targeting of the compilation unit by the ranges a runner put in the execution context, 
+     * or else by the ranges given for its source path; null if no method of it is targeted in particular
+     */
+    @Nullable
+    public static TargetedMethods of(J.CompilationUnit compUnit, ExecutionContext executionContext, Map<String, LineRanges> rangesByPath) {
+        LineRanges ranges = LineRanges.in(executionContext);
+        if (ranges == null)
+            ranges = rangesByPath.get(compUnit.getSourcePath().toString().replace('\\', '/'));
+        if (ranges == null)
+            return null;
+
+        Map<UUID, Map<UUID, int[]>> spansByCompUnit = executionContext.computeMessageIfAbsent(CONTEXT_KEY, k -> new ConcurrentHashMap<>());
+        return new TargetedMethods(ranges, spansByCompUnit.computeIfAbsent(compUnit.getId(), id -> spansOf(compUnit)));
+    }
+
+    private static Map<UUID, int[]> spansOf(J.CompilationUnit compUnit) {
+        SpanPrinter printer = new SpanPrinter();
+        printer.visit(compUnit, new LineCountingOutput());
+        return printer.spans;
+    }
+
+    public boolean isTargeted(J.MethodDeclaration method) {
+        int[] span = spans.get(method.getId());
+        return span == null || ranges.overlaps(span[0], span[1]);
+    }
+
+    private static class SpanPrinter extends JavaPrinter<Integer> {
+
+        final Map<UUID, int[]> spans = new HashMap<>();
+
+        @Override
+        public J visitMethodDeclaration(J.MethodDeclaration method, PrintOutputCapture<Integer> p) {
+            LineCountingOutput out = (LineCountingOutput) p;
+            // the first line of the enclosing method, if any, is known by now; methods nested in this one restore it the same way
+            int enclosingFirstLine = out.firstContentLine;
+            out.firstContentLine = -1;
+
+            J ret = super.visitMethodDeclaration(method, p);
+
+            spans.put(method.getId(), new int[] {out.firstContentLine, out.line});
+            out.firstContentLine = enclosingFirstLine;
+            return ret;
+        }
+    }
+
+    /*** counts lines and remembers where the first non-whitespace character since the last reset was */
+    private static class LineCountingOutput extends PrintOutputCapture<Integer> {
+
+        int line = 1;
+        int firstContentLine = 0;
+
+        LineCountingOutput() {
+            super(0);
+        }
+
+        @Override
+        public PrintOutputCapture<Integer> append(@Nullable String text) {
+            if (text != null)
+                for (int i=0; i < text.length(); i++)
+                    count(text.charAt(i));
+            return this;
+        }
+
+        @Override
+        public PrintOutputCapture<Integer> append(char c) {
+            count(c);
+            return this;
+        }
+
+        private void count(char c) {
+            if (firstContentLine < 0 && !Character.isWhitespace(c))
+                firstContentLine = line;
+
+            if (c == '\n')
+                line++;
+        }
+    }
+}
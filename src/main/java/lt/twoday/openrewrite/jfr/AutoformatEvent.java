@@ -0,0 +1,21 @@
+package lt.twoday.openrewrite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.twoday.openrewrite.Autoformat")
+@Label("Autoformat")
+@Category({"OpenRewrite", "Recipes"})
+@Description("Formatting rewritten statements")
+public class AutoformatEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Statements")
+    @Description("Rewritten or moved statements to format")
+    public int statements;
+}
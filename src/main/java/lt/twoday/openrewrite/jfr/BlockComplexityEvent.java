@@ -0,0 +1,25 @@
+package lt.twoday.openrewrite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.twoday.openrewrite.BlockComplexity")
+@Label("Block Complexity")
+@Category({"OpenRewrite", "Recipes"})
+@Description("BlockComplexityVisitor marking the blocks of one method")
+public class BlockComplexityEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Blocks")
+    @Description("Blocks measured")
+    public int blocks;
+
+    @Label("Extract Method Candidates")
+    @Description("Blocks found fit for extract method")
+    public int candidates;
+}
@@ -0,0 +1,24 @@
+package lt.twoday.openrewrite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.twoday.openrewrite.CompilationUnit")
+@Label("Compilation Unit")
+@Category({"OpenRewrite", "Recipes"})
+@Description("A recipe visiting one source file")
+public class CompilationUnitEvent extends Event {
+
+    @Label("Recipe")
+    public String recipe;
+
+    @Label("Source Path")
+    public String sourcePath;
+
+    @Label("Methods")
+    @Description("Methods the recipe worked on")
+    public int methods;
+}
@@ -0,0 +1,18 @@
+package lt.twoday.openrewrite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.twoday.openrewrite.InvertCondition")
+@Label("Invert Condition")
+@Category({"OpenRewrite", "Recipes"})
+@Description("Negating and simplifying a condition")
+public class InvertConditionEvent extends Event {
+
+    @Label("Terms")
+    @Description("Operands of the && and || operators of the condition")
+    public int terms;
+}
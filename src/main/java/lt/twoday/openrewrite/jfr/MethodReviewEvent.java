@@ -0,0 +1,27 @@
+package lt.twoday.openrewrite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.twoday.openrewrite.MethodReview")
+@Label("Method Review")
+@Category({"OpenRewrite", "Recipes"})
+@Description("ReduceConditionBranches reviewing one method, formatting and traversal included")
+public class MethodReviewEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Nodes")
+    @Description("Nodes of the method body that were analysed")
+    public int nodes;
+
+    @Label("Conditionals Analysed")
+    public int ifsAnalysed;
+
+    @Label("Rules Applied")
+    public int rulesApplied;
+}
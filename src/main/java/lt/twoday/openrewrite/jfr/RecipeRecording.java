@@ -0,0 +1,45 @@
+package lt.twoday.openrewrite.jfr;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/***
+ * the bundled recording profile {@code jfr/recipes.jfc}, read from the classpath,
+ * so that it is found wherever the recipes are run from, a jar included.
+ */
+public class RecipeRecording {
+
+    public static final String PROFILE_RESOURCE = "/jfr/recipes.jfc";
+
+    public static Configuration profile() throws IOException {
+        InputStream in = RecipeRecording.class.getResourceAsStream(PROFILE_RESOURCE);
+        if (in == null)
+            throw new IOException(PROFILE_RESOURCE + " not found on the classpath");
+
+        try (Reader reader = new InputStreamReader(in, UTF_8)) {
+            return Configuration.create(reader);
+        } catch (ParseException e) {
+            throw new IOException("could not parse " + PROFILE_RESOURCE, e);
+        }
+    }
+
+    /*** a recording of the bundled profile, dumped to {@code destination} when it is stopped or the JVM exits */
+    public static Recording start(Path destination) throws IOException {
+        Recording ret = new Recording(profile());
+        ret.setName("recipes");
+        ret.setDestination(destination);
+        ret.setToDisk(true);
+        ret.setDumpOnExit(true);
+        ret.start();
+        return ret;
+    }
+}
@@ -0,0 +1,21 @@
+package lt.twoday.openrewrite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.twoday.openrewrite.RuleApplication")
+@Label("Rule Application")
+@Category({"OpenRewrite", "Recipes"})
+@Description("A reduction rule rewriting a conditional, from the rule decision to the rewritten conditional, nested reductions included")
+public class RuleApplicationEvent extends Event {
+
+    @Label("Rule")
+    public String rule;
+
+    @Label("Statements")
+    @Description("Statement nodes of the conditional the rule rewrote, its branches included, as before the rewrite")
+    public int statements;
+}
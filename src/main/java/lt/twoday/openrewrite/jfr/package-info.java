@@ -0,0 +1,9 @@
+/***
+ * Java Flight Recorder events of the recipes: compilation units, method reviews, rule applications,
+ * condition inversions, autoformatting and block complexity passes.
+ *
+ * The events are disabled unless a recording enables them, i.e. one of the bundled profile {@code jfr/recipes.jfc},
+ * read from the classpath by {@link lt.twoday.openrewrite.jfr.RecipeRecording}.
+ * Disabled, an event costs an enabled check; its fields are only computed when it is going to be committed.
+ */
+package lt.twoday.openrewrite.jfr;
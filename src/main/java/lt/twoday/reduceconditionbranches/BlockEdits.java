@@ -0,0 +1,117 @@
+package lt.twoday.reduceconditionbranches;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.Statement;
+
+/***
+ * edit script for the statements of one block.
+ *
+ * Replacements and splices are recorded against the original statement positions
+ * and the new statement list is built once, by {@link #apply(Set)}.
+ * The script also tells apart statements that were rewritten or moved (and need formatting)
+ * from statements that merely carry a change made deeper inside them.
+ */
+public class BlockEdits {
+
+    private final List<Statement> statements;
+
+    private Statement[] replacements = null;
+    private Map<Integer, List<Statement>> splices = null;
+    private int splicedCount = 0;
+
+    private final Set<UUID> rewritten = new HashSet<>();
+
+    public BlockEdits(List<Statement> statements) {
+        this.statements = statements;
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    /*** the statement at the given original position, as replaced so far */
+    public Statement get(int position) {
+        if (replacements != null && replacements[position] != null)
+            return replacements[position];
+
+        return statements.get(position);
+    }
+
+    /*** replaces a statement that changed somewhere inside */
+    public void replace(int position, Statement statement) {
+        if (replacements == null)
+            replacements = new Statement[statements.size()];
+
+        replacements[position] = statement;
+    }
+
+    /*** replaces a statement with its rewritten version */
+    public void rewrite(int position, Statement statement) {
+        replace(position, statement);
+        rewritten.add(statement.getId());
+    }
+
+    /*** inlines a statement (or the contents of a block) right after the given original position */
+    public void spliceAfter(int position, Statement statement) {
+        spliceAfter(position, flatten(statement));
+    }
+
+    /*** inlines statements right after the given original position */
+    public void spliceAfter(int position, List<Statement> inlined) {
+        if (splices == null)
+            splices = new HashMap<>();
+
+        splices.computeIfAbsent(position, p -> new ArrayList<>()).addAll(inlined);
+        splicedCount += inlined.size();
+
+        for (Statement st: inlined)
+            rewritten.add(st.getId());
+    }
+
+    /*** the statements of a block, or the single statement itself */
+    public static List<Statement> flatten(Statement statement) {
+        if (statement instanceof J.Block)
+            return ((J.Block) statement).getStatements();
+
+        return Collections.singletonList(statement);
+    }
+
+    public boolean isChanged() {
+        return replacements != null || splices != null;
+    }
+
+    /*** builds the edited block and adds the ids of rewritten or moved statements to {@code touched} */
+    public J.Block applyTo(J.Block block, Set<UUID> touched) {
+        if (!isChanged())
+            return block;
+
+        return block.withStatements(apply(touched));
+    }
+
+    /*** builds the edited statement list and adds the ids of rewritten or moved statements to {@code touched} */
+    public List<Statement> apply(Set<UUID> touched) {
+        if (!isChanged())
+            return statements;
+
+        List<Statement> edited = new ArrayList<>(statements.size() + splicedCount);
+        for (int i=0; i < statements.size(); i++) {
+            edited.add(get(i));
+
+            List<Statement> spliced = splices == null ? null : splices.get(i);
+            if (spliced != null)
+                edited.addAll(spliced);
+        }
+
+        touched.addAll(rewritten);
+        return edited;
+    }
+}
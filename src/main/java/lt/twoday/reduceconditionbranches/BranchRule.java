@@ -0,0 +1,76 @@
+package lt.twoday.reduceconditionbranches;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+
+import lt.twoday.openrewrite.SubtreeMetrics;
+
+/***
+ * the rules reducing a conditional other than a single-if method body, in the order they are tried: the first matching rule wins.
+ *
+ * Both the rewriting visitor and the report-only {@link ReductionCandidateFinder} decide through {@link #classify},
+ * so what gets reported is what gets rewritten.
+ * Flattening rules inline a branch after the conditional, so they only apply to conditionals standing in a block.
+ */
+enum BranchRule {
+
+    EMPTY_ELSE_REMOVAL(ReductionRule.EMPTY_ELSE_REMOVAL, false) {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.isEmpty(iff.getElsePart());
+        }
+    },
+
+    EMPTY_THEN_SWAP(ReductionRule.EMPTY_THEN_SWAP, false) {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.isEmpty(iff.getThenPart());
+        }
+    },
+
+    THEN_RETURN_FLATTENING(ReductionRule.THEN_RETURN_FLATTENING, true) {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.hasGuaranteedReturn(iff.getThenPart());
+        }
+    },
+
+    ELSE_RETURN_FLATTENING(ReductionRule.ELSE_RETURN_FLATTENING, true) {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.hasGuaranteedReturn(iff.getElsePart().getBody());
+        }
+    };
+
+    private static final BranchRule[] RULES = values();
+
+    private final ReductionRule rewrite;
+    private final boolean flattening;
+
+    BranchRule(ReductionRule rewrite, boolean flattening) {
+        this.rewrite = rewrite;
+        this.flattening = flattening;
+    }
+
+    /*** tested on conditionals with an else part only */
+    abstract boolean test(SubtreeMetrics metrics, J.If iff);
+
+    /***
+     * the rewrite reducing the conditional, or null when it stays as it is (apart from what is nested in it).
+     * {@code inBlock} when the conditional is a block statement, rather than a branch of another conditional or outside of methods.
+     */
+    @Nullable
+    static ReductionRule classify(SubtreeMetrics metrics, J.If iff, boolean inBlock) {
+        if (iff.getElsePart() == null)
+            return null;
+
+        for (BranchRule rule: RULES) {
+            if (rule.flattening && !inBlock)
+                continue;
+
+            if (rule.test(metrics, iff))
+                return rule.rewrite;
+        }
+        return null;
+    }
+}
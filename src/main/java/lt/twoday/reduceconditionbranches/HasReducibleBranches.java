@@ -0,0 +1,74 @@
+package lt.twoday.reduceconditionbranches;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.J.Block;
+import org.openrewrite.marker.SearchResult;
+
+import lt.twoday.openrewrite.GeneratedSources;
+
+/***
+ * cheap applicability check for {@link ReduceConditionBranches}.
+ *
+ * Every reduction needs either an if with an else part, or a method consisting of a single if;
+ * sources having neither are rejected before the rewriting visitor runs.
+ * The scan stops descending as soon as the first candidate is found.
+ * Generated sources are rejected by their header, without a scan.
+ */
+public class HasReducibleBranches extends JavaIsoVisitor<ExecutionContext> {
+
+    private boolean found = false;
+
+    @Override
+    public J visit(@Nullable Tree tree, ExecutionContext executionContext) {
+        if (found)
+            return (J) tree;
+
+        return super.visit(tree, executionContext);
+    }
+
+    @Override
+    public J.CompilationUnit visitCompilationUnit(J.CompilationUnit compUnit, ExecutionContext executionContext) {
+        found = false;
+
+        if (GeneratedSources.isGenerated(compUnit, executionContext))
+            return compUnit;
+
+        J.CompilationUnit ret = super.visitCompilationUnit(compUnit, executionContext);
+        if (found)
+            return SearchResult.found(ret);
+
+        return ret;
+    }
+
+    @Override
+    public J.Import visitImport(J.Import _import, ExecutionContext executionContext) {
+        return _import;
+    }
+
+    @Override
+    public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, ExecutionContext executionContext) {
+        Block body = method.getBody();
+        if (body != null
+                && body.getStatements().size() == 1
+                && body.getStatements().get(0) instanceof J.If) {
+            found = true;
+            return method;
+        }
+
+        return super.visitMethodDeclaration(method, executionContext);
+    }
+
+    @Override
+    public J.If visitIf(J.If iff, ExecutionContext executionContext) {
+        if (iff.getElsePart() != null) {
+            found = true;
+            return iff;
+        }
+
+        return super.visitIf(iff, executionContext);
+    }
+}
@@ -0,0 +1,62 @@
+package lt.twoday.reduceconditionbranches;
+
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+import lombok.Value;
+
+/***
+ * the work ReduceConditionBranches did on each method
+ */
+public class MethodReductionStats extends DataTable<MethodReductionStats.Row> {
+
+    public MethodReductionStats(Recipe recipe) {
+        super(recipe,
+              "Condition branch reduction per method",
+              "Nodes and conditionals analysed, rules applied, review passes and time spent reviewing and formatting each method.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The source file of the method.")
+        String sourcePath;
+
+        @Column(displayName = "Class",
+                description = "The simple name of the class declaring the method.")
+        String className;
+
+        @Column(displayName = "Method",
+                description = "The method name.")
+        String methodName;
+
+        @Column(displayName = "Nodes visited",
+                description = "Number of nodes of the method body that were analysed.")
+        int nodesVisited;
+
+        @Column(displayName = "Conditionals analysed",
+                description = "Number of times a rule decision was taken on a conditional of the method.")
+        int ifsAnalysed;
+
+        @Column(displayName = "Rules applied",
+                description = "Number of reduction rules applied to the method.")
+        int rulesApplied;
+
+        @Column(displayName = "Review passes",
+                description = "Number of passes over the method body, each pass reviewing what the previous one changed.")
+        int reviewPasses;
+
+        @Column(displayName = "Stable",
+                description = "False when the method still changed in the last review pass allowed, so it may reduce further on another run.")
+        boolean stable;
+
+        @Column(displayName = "Review nanoseconds",
+                description = "Time spent reviewing the method, formatting included.")
+        long reviewNanos;
+
+        @Column(displayName = "Autoformat nanoseconds",
+                description = "Time spent formatting the rewritten statements of the method.")
+        long autoformatNanos;
+    }
+}
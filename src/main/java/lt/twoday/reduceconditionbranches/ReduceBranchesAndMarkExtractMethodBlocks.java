@@ -0,0 +1,116 @@
+package lt.twoday.reduceconditionbranches;
+
+import java.util.List;
+
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.tree.J;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import lt.twoday.extractmethodmarker.MarkExtractMethodBlocksRecipe;
+
+/***
+ * {@link ReduceConditionBranches} followed by {@link MarkExtractMethodBlocksRecipe}, fused into a single traversal.
+ *
+ * Each outermost method (or conditional outside of methods) is marked right after it got reduced,
+ * instead of the marking recipe walking the whole source file again.
+ * The result is the same as running the two recipes one after another.
+ */
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class ReduceBranchesAndMarkExtractMethodBlocks extends Recipe {
+
+    @Option(displayName = "Maximum nodes per method",
+            description = "Methods with more statement nodes are left untouched and reported in the methods over budget data table.",
+            example = "20000",
+            required = false)
+    @Nullable
+    Integer maxNodes;
+
+    @Option(displayName = "Maximum nesting per method",
+            description = "Methods with statements nested deeper are left untouched and reported in the methods over budget data table.",
+            example = "200",
+            required = false)
+    @Nullable
+    Integer maxNesting;
+
+    @Option(displayName = "Maximum milliseconds per method",
+            description = "Methods taking longer to reduce or to mark are left untouched by that recipe and reported in the methods over budget data table.",
+            example = "10000",
+            required = false)
+    @Nullable
+    Long maxMillis;
+
+    @Option(displayName = "Line ranges",
+            description = "Only methods overlapping these lines are reduced and marked, given as <source path>:<line ranges>. "
+                        + "Sources not listed are processed as a whole.",
+            example = "src/main/java/com/acme/Parser.java:10-20,35",
+            required = false)
+    @Nullable
+    List<String> lineRanges;
+
+    transient ReduceConditionBranches reduceConditionBranches;
+    transient MarkExtractMethodBlocksRecipe markExtractMethodBlocks;
+
+    public ReduceBranchesAndMarkExtractMethodBlocks() {
+        this(null, null, null, null);
+    }
+
+    @JsonCreator
+    public ReduceBranchesAndMarkExtractMethodBlocks(@Nullable @JsonProperty("maxNodes") Integer maxNodes,
+                                                    @Nullable @JsonProperty("maxNesting") Integer maxNesting,
+                                                    @Nullable @JsonProperty("maxMillis") Long maxMillis,
+                                                    @Nullable @JsonProperty("lineRanges") List<String> lineRanges) {
+        this.maxNodes = maxNodes;
+        this.maxNesting = maxNesting;
+        this.maxMillis = maxMillis;
+        this.lineRanges = lineRanges;
+        this.reduceConditionBranches = new ReduceConditionBranches(null, null, maxNodes, maxNesting, maxMillis, lineRanges);
+        this.markExtractMethodBlocks = new MarkExtractMethodBlocksRecipe(maxNodes, maxNesting, maxMillis, lineRanges);
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Reduces unncessary conditional branches and marks blocks for extract method";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Runs the branch reduction and the extract method block marking in one pass over each method.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        MarkExtractMethodBlocksRecipe.MarkingVisitor mark = markExtractMethodBlocks.getVisitor();
+        JavaVisitor<ExecutionContext> reduceAndMark = reduceConditionBranches.createVisitor(mark);
+
+        return new JavaVisitor<ExecutionContext>() {
+            @Override
+            public J visitCompilationUnit(J.CompilationUnit compUnit, ExecutionContext executionContext) {
+                Cursor parent = getCursor().getParentOrThrow();
+
+                // the precondition of the reduction alone: sources without reducible branches only get marked
+                boolean reducible = new HasReducibleBranches().visit(compUnit, executionContext) != compUnit;
+                if (!reducible)
+                    return mark.visit(compUnit, executionContext, parent);
+
+                // the marking is set up for the original source, before it gets reduced
+                if (!mark.enterCompilationUnit(compUnit, executionContext))
+                    return (J) reduceConditionBranches.createVisitor(null).visit(compUnit, executionContext, parent);
+
+                J ret = reduceAndMark.visit(compUnit, executionContext, parent);
+                mark.exitCompilationUnit(compUnit);
+                return ret;
+            }
+        };
+    }
+}
@@ -15,16 +15,26 @@
  */
 package lt.twoday.reduceconditionbranches;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import org.openrewrite.Cursor;
 import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
+import org.openrewrite.Preconditions;
 import org.openrewrite.Recipe;
 import org.openrewrite.Tree;
 import org.openrewrite.TreeVisitor;
 import org.openrewrite.internal.lang.Nullable;
-import org.openrewrite.java.CountLinesVisitor;
 import org.openrewrite.java.JavaVisitor;
 import org.openrewrite.java.format.TabsAndIndentsVisitor;
 import org.openrewrite.java.format.WrappingAndBracesVisitor;
@@ -38,22 +48,132 @@ import org.openrewrite.java.tree.J.If.Else;
 import org.openrewrite.java.tree.J.MethodDeclaration;
 import org.openrewrite.java.tree.Statement;
 import org.openrewrite.marker.Markers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import lombok.EqualsAndHashCode;
 import lombok.Value;
-import lt.twoday.openrewrite.AllLinesCounter;
+import lt.twoday.openrewrite.DeepNesting;
 import lt.twoday.openrewrite.LSTUtils;
+import lt.twoday.openrewrite.LineRanges;
+import lt.twoday.openrewrite.MethodBudget;
+import lt.twoday.openrewrite.MethodsOverBudget;
 import lt.twoday.openrewrite.MyInvertCondition;
+import lt.twoday.openrewrite.SubtreeMetrics;
+import lt.twoday.openrewrite.TargetedMethods;
+import lt.twoday.openrewrite.jfr.AutoformatEvent;
+import lt.twoday.openrewrite.jfr.CompilationUnitEvent;
+import lt.twoday.openrewrite.jfr.MethodReviewEvent;
+import lt.twoday.openrewrite.jfr.RuleApplicationEvent;
 
 @Value
 @EqualsAndHashCode(callSuper = true)
 public class ReduceConditionBranches extends Recipe {
 
+    private static final Logger log  = LoggerFactory.getLogger(ReduceConditionBranches.class);
+
     private static final WrappingAndBracesStyle WRAPPING_AND_BRACES_STYLE = new WrappingAndBracesStyle(new IfStatement(true));
+    // rewrites can expose new reducible shapes; a method gets reviewed again until it is stable, at most this many times
+    private static final int MAX_REVIEW_PASSES = 8;
+    
     private static final TabsAndIndentsStyle TABS_AND_INDENTS_STYLE = new TabsAndIndentsStyle(false, 4, 4, 8, false, new TabsAndIndentsStyle.MethodDeclarationParameters(true));
 
+    @Option(displayName = "Disabled rules",
+            description = "Names of the single-if method body rules not to apply: "
+                        + "emptyThenLongElse, emptyElseLongThen, throwingElse, throwingThen, shortElseLongThen, bothBranches.",
+            example = "throwingThen",
+            required = false)
+    @Nullable
+    List<String> disabledRules;
+
+    @Option(displayName = "Report only",
+            description = "Only report the conditionals that would be rewritten, in the candidates data table, without changing the source.",
+            required = false)
+    @Nullable
+    Boolean reportOnly;
+
+    @Option(displayName = "Maximum nodes per method",
+            description = "Methods with more statement nodes are left untouched and reported in the methods over budget data table.",
+            example = "20000",
+            required = false)
+    @Nullable
+    Integer maxNodes;
+
+    @Option(displayName = "Maximum nesting per method",
+            description = "Methods with statements nested deeper are left untouched and reported in the methods over budget data table.",
+            example = "200",
+            required = false)
+    @Nullable
+    Integer maxNesting;
+
+    @Option(displayName = "Maximum milliseconds per method",
+            description = "Methods taking longer to review are left untouched and reported in the methods over budget data table.",
+            example = "10000",
+            required = false)
+    @Nullable
+    Long maxMillis;
+
+    @Option(displayName = "Line ranges",
+            description = "Only methods overlapping these lines are rewritten, given as <source path>:<line ranges>. "
+                        + "Other methods and conditionals outside of methods in those sources are left alone, sources not listed are rewritten as a whole.",
+            example = "src/main/java/com/acme/Parser.java:10-20,35",
+            required = false)
+    @Nullable
+    List<String> lineRanges;
+
+    transient SingleIfRules singleIfRules;
+    transient MethodBudget budget;
+    transient Map<String, LineRanges> lineRangesByPath;
+    
+    transient ReductionRuleStats ruleStats = new ReductionRuleStats(this);
+    transient MethodReductionStats methodStats = new MethodReductionStats(this);
+    transient ReductionCandidates candidates = new ReductionCandidates(this);
+    transient MethodsOverBudget methodsOverBudget = new MethodsOverBudget(this);
+
     public ReduceConditionBranches() {
-        
+        this(null, null);
+    }
+    
+    public ReduceConditionBranches(@Nullable List<String> disabledRules, @Nullable Boolean reportOnly) {
+        this(disabledRules, reportOnly, null, null, null, null);
+    }
+    
+    @JsonCreator
+    public ReduceConditionBranches(@Nullable @JsonProperty("disabledRules") List<String> disabledRules,
+                                   @Nullable @JsonProperty("reportOnly") Boolean reportOnly,
+                                   @Nullable @JsonProperty("maxNodes") Integer maxNodes,
+                                   @Nullable @JsonProperty("maxNesting") Integer maxNesting,
+                                   @Nullable @JsonProperty("maxMillis") Long maxMillis,
+                                   @Nullable @JsonProperty("lineRanges") List<String> lineRanges) {
+        this.disabledRules = disabledRules;
+        this.reportOnly = reportOnly;
+        this.maxNodes = maxNodes;
+        this.maxNesting = maxNesting;
+        this.maxMillis = maxMillis;
+        this.lineRanges = lineRanges;
+        this.lineRangesByPath = lineRanges == null 
+                                    ? Collections.emptyMap() 
+                                    : LineRanges.parseByPath(lineRanges);
+        this.singleIfRules = disabledRules == null 
+                                ? SingleIfRules.defaults() 
+                                : SingleIfRules.defaults().disable(disabledRules);
+        this.budget = MethodBudget.of(maxNodes, maxNesting, maxMillis);
+    }
+    
+    /*** with a custom single-if rule set, i.e. {@code SingleIfRules.defaults().register(...)} */
+    public ReduceConditionBranches(SingleIfRules singleIfRules) {
+        this.disabledRules = null;
+        this.reportOnly = null;
+        this.maxNodes = null;
+        this.maxNesting = null;
+        this.maxMillis = null;
+        this.lineRanges = null;
+        this.singleIfRules = singleIfRules;
+        this.budget = MethodBudget.UNLIMITED;
+        this.lineRangesByPath = Collections.emptyMap();
     }
     
 	@Override
@@ -68,18 +188,57 @@ public class ReduceConditionBranches extends Recipe {
         return "Simplifies any IF statements by removing empty then or else blocks, re-ordering or inlining them.";
     }
 
-    private static void insertFlattened(List<Statement> allStatements, int i, Statement statement) {
-        if (statement instanceof J.Block) {
-            allStatements.addAll(i, ((J.Block)statement).getStatements());
-            return;
-        }
-        
-        allStatements.add(i, statement);
-    }
-
     @Override
     public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return Preconditions.check(new HasReducibleBranches(), createVisitor(null));
+    }
+    
+    /***
+     * the visitor of this recipe without its precondition.
+     * 
+     * If given, {@code followUpVisitor} is applied to every outermost method or conditional (outside of methods)
+     * right after it got reduced, so another recipe can work on the same subtree while it is still hot.
+     * The follow-up is not applied in report-only mode.
+     */
+    public JavaVisitor<ExecutionContext> createVisitor(@Nullable TreeVisitor<?, ExecutionContext> followUpVisitor) {
+        if (Boolean.TRUE.equals(reportOnly))
+            return new ReductionCandidateFinder(singleIfRules, candidates, budget, methodsOverBudget, lineRangesByPath);
+        
         return new JavaVisitor<ExecutionContext>() {
+            
+            // facts about the subtrees of the method being reviewed; all rule decisions read them from here
+            private SubtreeMetrics metrics = new SubtreeMetrics();
+            
+            // statements of the method being reviewed that got rewritten or moved, only these get autoformatted
+            private Set<UUID> touchedStatements = new HashSet<>();
+            
+            // block statements of the method being reviewed that a review pass left unchanged, the next pass skips them
+            private Set<Statement> settledStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+            
+            // ids of the conditionals of the method being reviewed that were already decided upon, the traversal does not analyse them again;
+            // by id, as formatting and rewrites of nested statements create new instances of a decided conditional
+            private Set<UUID> reviewedIfs = new HashSet<>();
+            
+            // rule applications in the source file being visited, reported once it is done
+            private final int[] ruleApplications = new int[ReductionRule.values().length];
+            private final long[] ruleNanos = new long[ReductionRule.values().length];
+            
+            // work done on the method being reviewed
+            private int methodRulesApplied = 0;
+            private int ifsAnalysed = 0;
+            private int reviewPasses = 0;
+            private boolean passesExhausted = false;
+            private long methodAutoformatNanos = 0;
+            private MethodBudget.Deadline deadline = MethodBudget.UNLIMITED.start();
+            
+            // methods reviewed in the source file being visited
+            private int methodsReviewed = 0;
+            
+            // the methods of the source file being visited to review, null if all of them
+            @Nullable
+            private TargetedMethods targetedMethods = null;
+            private int methodDepth = 0;
+            
             @Override
             public J visitCompilationUnit(J.CompilationUnit compUnit, ExecutionContext executionContext) {
                 // This next line could be omitted in favor of a breakpoint
@@ -87,36 +246,216 @@ public class ReduceConditionBranches extends Recipe {
             	
                 // System.out.println(TreeVisitingPrinter.printTree(getCursor()));
                 
-                return super.visitCompilationUnit(compUnit, executionContext);
+                Arrays.fill(ruleApplications, 0);
+                Arrays.fill(ruleNanos, 0);
+                methodsReviewed = 0;
+                targetedMethods = TargetedMethods.of(compUnit, executionContext, lineRangesByPath);
+                
+                CompilationUnitEvent event = new CompilationUnitEvent();
+                event.begin();
+                
+                J ret = super.visitCompilationUnit(compUnit, executionContext);
+                
+                if (event.shouldCommit()) {
+                    event.recipe = ReduceConditionBranches.class.getSimpleName();
+                    event.sourcePath = compUnit.getSourcePath().toString();
+                    event.methods = methodsReviewed;
+                    event.commit();
+                }
+                
+                for (ReductionRule rule: ReductionRule.values())
+                    if (ruleApplications[rule.ordinal()] > 0)
+                        ruleStats.insertRow(executionContext, 
+                                            new ReductionRuleStats.Row(compUnit.getSourcePath().toString(),
+                                                                       rule,
+                                                                       ruleApplications[rule.ordinal()],
+                                                                       ruleNanos[rule.ordinal()]));
+                return ret;
             }
             
             @Override
             public J visitMethodDeclaration(MethodDeclaration method, ExecutionContext executionContext) {                
                 Block methodBody = method.getBody();
                 if (methodBody == null)
-                    return super.visitMethodDeclaration(method, executionContext);
+                    return applyFollowUp(super.visitMethodDeclaration(method, executionContext), executionContext);
                 
-                Block reviewed = reviewMethod(methodBody, executionContext);
-
-                if (methodBody != reviewed)
-                    method = autoformat(method.withBody(reviewed), executionContext, getCursor());
+                // methods left as they are still get the follow-up, as if it ran after this visitor
+                if (targetedMethods != null && !targetedMethods.isTargeted(method))
+                    return applyFollowUp(method, executionContext);
                 
-                return super.visitMethodDeclaration(method, executionContext);
+                int depth = DeepNesting.depthOf(methodBody);
+                String overBudget = budget.exceededBy(depth, methodBody);
+                if (overBudget != null) {
+                    methodsOverBudget.record(executionContext, getCursor(), method, overBudget);
+                    return applyFollowUp(method, executionContext);
+                }
+                
+                return DeepNesting.call(depth, 
+                                        () -> reviewMethodDeclaration(method, executionContext));
+            }
+            
+            private J reviewMethodDeclaration(MethodDeclaration method, ExecutionContext executionContext) {
+                long startNanos = System.nanoTime();
+                Block methodBody = method.getBody();
+                
+                SubtreeMetrics enclosingMetrics = metrics;
+                Set<UUID> enclosingTouchedStatements = touchedStatements;
+                Set<Statement> enclosingSettledStatements = settledStatements;
+                Set<UUID> enclosingReviewedIfs = reviewedIfs;
+                int enclosingRulesApplied = methodRulesApplied;
+                int enclosingIfsAnalysed = ifsAnalysed;
+                int enclosingReviewPasses = reviewPasses;
+                boolean enclosingPassesExhausted = passesExhausted;
+                long enclosingAutoformatNanos = methodAutoformatNanos;
+                MethodBudget.Deadline enclosingDeadline = deadline;
+                int[] ruleApplicationsBefore = ruleApplications.clone();
+                long[] ruleNanosBefore = ruleNanos.clone();
+                deadline = budget.start();
+                metrics = new SubtreeMetrics();
+                touchedStatements = new HashSet<>();
+                settledStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+                reviewedIfs = new HashSet<>();
+                methodRulesApplied = 0;
+                ifsAnalysed = 0;
+                reviewPasses = 0;
+                passesExhausted = false;
+                methodAutoformatNanos = 0;
+                methodDepth++;
+                
+                MethodReviewEvent event = new MethodReviewEvent();
+                event.begin();
+                try {
+                    // without a conditional the review passes could reach, there is nothing to reduce
+                    Block reviewed = hasReviewableIf(methodBody) 
+                                        ? reviewUntilStable(methodBody, executionContext) 
+                                        : methodBody;
+                    
+                    if (deadline.passed()) {
+                        // the review was cut short: leaving the method as it was
+                        System.arraycopy(ruleApplicationsBefore, 0, ruleApplications, 0, ruleApplications.length);
+                        System.arraycopy(ruleNanosBefore, 0, ruleNanos, 0, ruleNanos.length);
+                        methodsOverBudget.record(executionContext, getCursor(), method, budget.timeExceeded());
+                        return applyFollowUp(method, executionContext);
+                    }
+    
+                    if (passesExhausted)
+                        log.warn("{} still changed in the last of {} review passes, it may reduce further on another run",
+                                 method.getSimpleName(), MAX_REVIEW_PASSES);
+                    
+                    if (methodBody != reviewed) {
+                        long formatStartNanos = System.nanoTime();
+                        method = autoformatTouched(method.withBody(reviewed), executionContext);
+                        methodAutoformatNanos += System.nanoTime() - formatStartNanos;
+                    }
+                    
+                    J ret = super.visitMethodDeclaration(method, executionContext);
+                    
+                    methodsReviewed++;
+                    reportMethod(method, System.nanoTime() - startNanos, executionContext);
+                    return applyFollowUp(ret, executionContext);
+                } finally {
+                    if (event.shouldCommit()) {
+                        event.method = method.getSimpleName();
+                        event.nodes = metrics.visits();
+                        event.ifsAnalysed = ifsAnalysed;
+                        event.rulesApplied = methodRulesApplied;
+                        event.commit();
+                    }
+                    
+                    metrics = enclosingMetrics;
+                    touchedStatements = enclosingTouchedStatements;
+                    settledStatements = enclosingSettledStatements;
+                    reviewedIfs = enclosingReviewedIfs;
+                    methodRulesApplied = enclosingRulesApplied;
+                    ifsAnalysed = enclosingIfsAnalysed;
+                    reviewPasses = enclosingReviewPasses;
+                    passesExhausted = enclosingPassesExhausted;
+                    methodAutoformatNanos = enclosingAutoformatNanos;
+                    deadline = enclosingDeadline;
+                    methodDepth--;
+                }
+            }
+            
+            private void reportMethod(MethodDeclaration method, long reviewNanos, ExecutionContext executionContext) {
+                J.CompilationUnit compUnit = getCursor().firstEnclosing(J.CompilationUnit.class);
+                J.ClassDeclaration classDeclaration = getCursor().firstEnclosing(J.ClassDeclaration.class);
+                
+                methodStats.insertRow(executionContext, 
+                                      new MethodReductionStats.Row(
+                                              compUnit == null ? "" : compUnit.getSourcePath().toString(),
+                                              classDeclaration == null ? "" : classDeclaration.getSimpleName(),
+                                              method.getSimpleName(),
+                                              metrics.visits(),
+                                              ifsAnalysed,
+                                              methodRulesApplied,
+                                              reviewPasses,
+                                              !passesExhausted,
+                                              reviewNanos,
+                                              methodAutoformatNanos));
+            }
+            
+            /*** {@code event} got begun along with {@code startNanos}, as the rule was being decided on {@code conditional} */
+            private void applied(ReductionRule rule, long startNanos, RuleApplicationEvent event, J.If conditional) {
+                ruleApplications[rule.ordinal()]++;
+                ruleNanos[rule.ordinal()] += System.nanoTime() - startNanos;
+                methodRulesApplied++;
+                
+                event.end();
+                if (event.shouldCommit()) {
+                    event.rule = rule.name();
+                    event.statements = DeepNesting.sizeOf(conditional, Integer.MAX_VALUE);
+                    event.commit();
+                }
+            }
+            
+            private <T> T applied(ReductionRule rule, long startNanos, RuleApplicationEvent event, J.If conditional, T result) {
+                applied(rule, startNanos, event, conditional);
+                return result;
+            }
+        
+            private J applyFollowUp(J reduced, ExecutionContext executionContext) {
+                if (followUpVisitor == null)
+                    return reduced;
+                
+                Cursor parent = getCursor().getParentOrThrow();
+                if (parent.firstEnclosing(J.MethodDeclaration.class) != null || parent.firstEnclosing(J.If.class) != null)
+                    return reduced;
+                
+                return (J) followUpVisitor.visit(reduced, executionContext, parent);
             }
         
             @Override
             public J visitIf(J.If iff, ExecutionContext executionContext) {
-				Else elsePart = iff.getElsePart();
+                if (targetedMethods != null && methodDepth == 0)
+                    return applyFollowUp(iff, executionContext); // only methods are targeted by line
+                
+                J.If reduced = reviewedIfs.contains(iff.getId()) ? iff : reduceIf(iff, true, executionContext);
+                
+                return applyFollowUp(super.visitIf(reduced, executionContext), executionContext);
+            }
+            
+            /*** 
+             * the rules applicable to a conditional standing alone (not as a statement of a block), without descending into it.
+             * {@code formatNow} when called from the traversal, where the cursor points at the conditional.
+             */
+            private J.If reduceIf(J.If iff, boolean formatNow, ExecutionContext executionContext) {
+                ifsAnalysed++;
+                reviewedIfs.add(iff.getId());
+                
+				long startNanos = System.nanoTime();
+				RuleApplicationEvent ruleEvent = new RuleApplicationEvent();
+				ruleEvent.begin();
+				ReductionRule rule = BranchRule.classify(metrics, iff, false);
 				
-				if (elsePart == null)
-					return super.visitIf(iff, executionContext); // No else part - ignoring
+				if (rule == null)
+					return iff; // No else part, or both parts have logic - leaving if as it was
 				
-				if (LSTUtils.isEmpty(elsePart)) 
-					return super.visitIf(iff.withElsePart(null), executionContext); // Else is empty, erasing it
+				if (rule == ReductionRule.EMPTY_ELSE_REMOVAL) 
+					return reviewed(applied(rule, startNanos, ruleEvent, iff, touch(iff.withElsePart(null)))); // Else is empty, erasing it
 
-				Statement thenPart = iff.getThenPart();
+				Else elsePart = iff.getElsePart();
 				
-				if (LSTUtils.isEmpty(thenPart)) {
+				if (rule == ReductionRule.EMPTY_THEN_SWAP) {
 	                boolean needsAutoformat = false;
                     Statement newThenPart = findAndReduceConditionBranches(elsePart.getBody(), executionContext);
 
@@ -129,67 +468,103 @@ public class ReduceConditionBranches extends Recipe {
                         newThenPart = LSTUtils.embrace(newThenPart);
                     
                     If newIfPart = iff.withIfCondition( 
-                                            MyInvertCondition.invert(iff.getIfCondition(), getCursor()) 
+                                            MyInvertCondition.invert(iff.getIfCondition(), getCursor(), executionContext) 
                                                 )
                                         .withThenPart(newThenPart)
                                         .withElsePart(null);
 				    
-                    if (needsAutoformat)
+                    // while reviewing the method, touched statements get formatted once the review is done
+                    if (needsAutoformat && formatNow) {
+                        long formatStartNanos = System.nanoTime();
+                        AutoformatEvent event = new AutoformatEvent();
+                        event.begin();
+                        
                         newIfPart = autoformat(newIfPart, executionContext, getCursor());
+                        
+                        methodAutoformatNanos += System.nanoTime() - formatStartNanos;
+                        if (event.shouldCommit()) {
+                            MethodDeclaration method = getCursor().firstEnclosing(MethodDeclaration.class);
+                            event.method = method == null ? "" : method.getSimpleName();
+                            event.statements = 1;
+                            event.commit();
+                        }
+                    }
                     
                     // the else part contains logic while the then part is empty - let's replace it with the else branch
-					return super.visitIf(
-							newIfPart, 
-							executionContext );
+					return reviewed(applied(rule, startNanos, ruleEvent, iff, touch(newIfPart)));
 				}
 				
 				// leaving if as it was otherwise
-            	return super.visitIf(iff, executionContext);
+            	return iff;
+            }
+            
+            private J.If reviewed(J.If iff) {
+                reviewedIfs.add(iff.getId());
+                return iff;
             }
                         
+            /*** reviews the method body again as long as the previous pass changed something, or the passes run out */
+            private Block reviewUntilStable(Block methodBody, ExecutionContext executionContext) {
+                Block reviewed = methodBody;
+                while (reviewPasses < MAX_REVIEW_PASSES) {
+                    reviewPasses++;
+                    Block next = reviewMethod(reviewed, executionContext);
+                    if (next == reviewed || deadline.passed())
+                        return reviewed;
+                    reviewed = next;
+                }
+                passesExhausted = true;
+                return reviewed;
+            }
+            
             private Block reviewMethod(Block block, ExecutionContext executionContext) {
                 if (block.getStatements().size() == 0)
                     return block;
 
                 if (isSingleIfMethod(block)) {
+                    long startNanos = System.nanoTime();
+                    RuleApplicationEvent ruleEvent = new RuleApplicationEvent();
+                    ruleEvent.begin();
                     J.If iff = (J.If) block.getStatements().get(0);
                     
-                    Statement thenPart = iff.getThenPart();
-                    Else elsePart = iff.getElsePart();
-                    
-                    boolean thenEmpty = LSTUtils.isEmpty(thenPart);
-                    boolean elseEmpty = LSTUtils.isEmpty(elsePart);
-                    
-                    boolean thenLong = isLong(thenPart);
-                    boolean elseLong = isLong(elsePart);
-                    
-                    boolean thenThrows = LSTUtils.isThrow(thenPart);
-                    boolean elseThrows = LSTUtils.isThrow(elsePart);
-                    
-                    if (thenEmpty && elseLong)
-                        return block.withStatements(createTypeAMethodBody(iff, executionContext));
-                    
-                    if (elseEmpty && thenLong && !thenThrows)
-                        return block.withStatements(createTypeBMethodBody(iff, executionContext));
-                    
-                    if (elseThrows && !thenThrows)
-                        return block.withStatements(createTypeBMethodBody(iff, executionContext));
-                    
-                    if (thenThrows)
-                        return block.withStatements(createTypeCMethodBody(iff, executionContext));
-                    
-                    if (!elseEmpty && !elseLong && thenLong)
-                        return block.withStatements(createTypeBMethodBody(iff, executionContext));
-                    
-                    if (!thenEmpty && !elseEmpty)
-                        return block.withStatements(createTypeCMethodBody(iff, executionContext));
+                    ifsAnalysed++;
+                    SingleIfRule rule = singleIfRules.classify(metrics, iff);
+                    if (rule != null) {
+                        List<Statement> statements = createMethodBody(rule.getRewrite(), iff, executionContext);
+                        Block newBlock = block.withStatements(statements);
+                        if (newBlock == block)
+                            return block;
+                        
+                        touchAll(statements);
+                        return applied(rule.getRewrite(), startNanos, ruleEvent, iff, newBlock);
+                    }
                 }
                 
                 return findAndReduceConditionBranches(block, executionContext);
             }
 
-            private boolean isLong(Tree s) {
-                return (s!=null) && AllLinesCounter.countLines(s) > 2;
+            private <T extends Statement> T touch(T statement) {
+                touchedStatements.add(statement.getId());
+                return statement;
+            }
+            
+            private List<Statement> touchAll(List<Statement> statements) {
+                for (Statement statement: statements)
+                    touch(statement);
+                return statements;
+            }
+            
+            private List<Statement> createMethodBody(ReductionRule rewrite, J.If iff, ExecutionContext executionContext) {
+                switch (rewrite) {
+                    case TYPE_A_METHOD_BODY:
+                        return createTypeAMethodBody(iff, executionContext);
+                    case TYPE_B_METHOD_BODY:
+                        return createTypeBMethodBody(iff, executionContext);
+                    case TYPE_C_METHOD_BODY:
+                        return createTypeCMethodBody(iff, executionContext);
+                    default:
+                        throw new IllegalArgumentException("not a method body rewrite: " + rewrite);
+                }
             }
             
             private List<Statement> createTypeAMethodBody(J.If iff, ExecutionContext executionContext) {
@@ -208,7 +583,7 @@ public class ReduceConditionBranches extends Recipe {
                          .withThenPart(newThenPart);
                 
                 statements.add(iff);
-                insertFlattened(statements, 1, findAndReduceConditionBranches(elsePart.getBody(), executionContext) );
+                statements.addAll(BlockEdits.flatten(findAndReduceConditionBranches(elsePart.getBody(), executionContext)));
                 return statements;
             }
 
@@ -219,13 +594,13 @@ public class ReduceConditionBranches extends Recipe {
                 Else elsePart = findAndReduceConditionBranches(iff.getElsePart(), executionContext);
                 
                 iff = iff.withIfCondition(
-                            MyInvertCondition.invert(iff.getIfCondition(), getCursor())
+                            MyInvertCondition.invert(iff.getIfCondition(), getCursor(), executionContext)
                                     )
                           .withThenPart(withReturn(iff, elsePart))
                           .withElsePart(null);
                 
                 statements.add(iff);
-                insertFlattened(statements, 1, thenPart );
+                statements.addAll(BlockEdits.flatten(thenPart));
                 return statements;
             }
 
@@ -243,45 +618,27 @@ public class ReduceConditionBranches extends Recipe {
                 
                 statements.add( iff.withElsePart(null).withThenPart(withReturn(thenPart)) );
                 
-                Statement elsePart = findAndReduceConditionBranches(iff.getElsePart().getBody(), executionContext);
-                
-                insertFlattened(statements, 1, elsePart );
+                if (iff.getElsePart() != null) {
+                    Statement elsePart = findAndReduceConditionBranches(iff.getElsePart().getBody(), executionContext);
+                    statements.addAll(BlockEdits.flatten(elsePart));
+                }
                 
                 return statements;
             }
             
-//            private List<Statement> createTypeDMethodBody(J.If iff, ExecutionContext executionContext) {
-//                List<Statement> statements = new ArrayList<>();
-//                
-//                Statement thenPart = iff.getThenPart();
-//                Else elsePart = iff.getElsePart();
-//                
-//                iff = iff.withIfCondition(
-//                            MyInvertCondition.invert(iff.getIfCondition(), getCursor())
-//                                        )
-//                        .withElsePart(null)
-//                        .withThenPart(elsePart.getBody());
-//                
-//                statements.add( iff);
-//                
-//                insertFlattened(statements, 1, findAndReduceConditionBranches(thenPart, executionContext) );
-//                
-//                return statements;
-//            }
-            
             private Statement withReturn(J.If parent, Else elsePart) {
                 if (elsePart == null)
                     return createReturn(parent);
                 
                 Statement elseBody = elsePart.getBody();
-                if (LSTUtils.isEmpty(elseBody))
+                if (metrics.isEmpty(elseBody))
                     return createReturn(parent);
                 
                 return withReturn(elseBody);
             }
             
             private Statement withReturn(Statement statement) {
-                if (LSTUtils.hasGuaranteedReturn(statement))
+                if (metrics.hasGuaranteedReturn(statement))
                     return statement;
                 
                 Block block;
@@ -300,12 +657,28 @@ public class ReduceConditionBranches extends Recipe {
                 return block.withStatements(statements);
             }
 
+            /*** whether a conditional stands in the block, in its nested blocks or try bodies: the places a review pass looks at */
+            private boolean hasReviewableIf(Block methodBody) {
+                Deque<Statement> statements = new ArrayDeque<>(methodBody.getStatements());
+                while (!statements.isEmpty()) {
+                    Statement statement = statements.pop();
+                    if (statement instanceof J.If)
+                        return true;
+                    
+                    if (statement instanceof J.Block)
+                        statements.addAll(((J.Block) statement).getStatements());
+                    else if (statement instanceof J.Try)
+                        statements.addAll(((J.Try) statement).getBody().getStatements());
+                }
+                return false;
+            }
+            
             private boolean isSingleIfMethod(J.Block block) {
                 return block.getStatements().size() == 1 && (block.getStatements().get(0) instanceof J.If);
             }
             
             private Else findAndReduceConditionBranches(Else elsePart, ExecutionContext executionContext) {
-                if (LSTUtils.isEmpty(elsePart))
+                if (metrics.isEmpty(elsePart))
                     return elsePart;
                 
                 return elsePart.withBody(findAndReduceConditionBranches(elsePart.getBody(), executionContext));
@@ -333,81 +706,106 @@ public class ReduceConditionBranches extends Recipe {
                 if (block == null)
                     return block;
                 
-                boolean touched = false;
-
-                List<Statement> statements = new ArrayList<>(block.getStatements());
+                BlockEdits edits = new BlockEdits(block.getStatements());
                 
-                for (int i=0; i < statements.size(); i++) 
-                    touched = findAndReduceConditionBranches(statements, i, executionContext) || touched;
+                for (int i=0; i < edits.size(); i++) 
+                    findAndReduceConditionBranches(edits, i, executionContext);
                 
-                if (touched)
-                    return block.withStatements(statements);
+                return edits.applyTo(block, touchedStatements);
+            }
+            
+            /*** reduces a branch about to be inlined as if its statements already were statements of the enclosing block */
+            private List<Statement> findAndReduceFlattened(Statement branch, ExecutionContext executionContext) {
+                BlockEdits edits = new BlockEdits(BlockEdits.flatten(branch));
                 
-                return block;
+                for (int i=0; i < edits.size(); i++) 
+                    findAndReduceConditionBranches(edits, i, executionContext);
+                
+                return edits.apply(touchedStatements);
             }
                         
             private J.If findAndReduceConditionBranches(J.If iff, ExecutionContext executionContext) {
                 if (iff == null)
                     return iff;
                 
-                return (J.If) visitIf(iff, executionContext);
+                // whatever is nested inside gets reviewed by the traversal following the method review
+                return reduceIf(iff, false, executionContext);
             }
             
-            private boolean findAndReduceConditionBranches(List<Statement> statements, int position, ExecutionContext executionContext) {
-                Statement statement = statements.get(position);
+            private void findAndReduceConditionBranches(BlockEdits edits, int position, ExecutionContext executionContext) {
+                Statement statement = edits.get(position);
+                if (settledStatements.contains(statement) || deadline.passed())
+                    return;
+                
+                reduceStatement(statement, edits, position, executionContext);
+                
+                if (edits.get(position) == statement)
+                    settledStatements.add(statement);
                 
+                if (edits.get(position) instanceof J.If)
+                    reviewedIfs.add(edits.get(position).getId());
+            }
+            
+            private void reduceStatement(Statement statement, BlockEdits edits, int position, ExecutionContext executionContext) {
                 if (statement instanceof J.If) {
                     J.If iff = (J.If)statement;
-                    return reduceConditionBranches(iff, statements, position, executionContext);
+                    reduceConditionBranches(iff, edits, position, executionContext);
+                    return;
                 }
                 
                 if (statement instanceof J.Block) {
                     Block oldBlock = (J.Block)statement;
                     Block newBlock = findAndReduceConditionBranches(oldBlock, executionContext);
-                    if (newBlock != oldBlock) {
-                        statements.set(position, newBlock);
-                        return true;
-                    }
+                    if (newBlock != oldBlock)
+                        edits.replace(position, newBlock);
+                    return;
                 }
                 
                 if (statement instanceof J.Try) {
                     J.Try tryy = (J.Try) statement;
                     Block oldBody = tryy.getBody();
                     Block newBody = findAndReduceConditionBranches(oldBody, executionContext);
-                    if (newBody != oldBody) {
-                        statements.set(position, tryy.withBody(newBody));
-                        return true;
-                    }
+                    if (newBody != oldBody)
+                        edits.replace(position, tryy.withBody(newBody));
                 }
-                
-                return false;
             }        
 
-            private boolean reduceConditionBranches(If ifStatement, List<Statement> allBlockLines, int ifStatementPosition, ExecutionContext executionContext) {
+            private void reduceConditionBranches(If ifStatement, BlockEdits edits, int ifStatementPosition, ExecutionContext executionContext) {
+                ifsAnalysed++;
+                long startNanos = System.nanoTime();
+                RuleApplicationEvent ruleEvent = new RuleApplicationEvent();
+                ruleEvent.begin();
                 Else elsePart = ifStatement.getElsePart();
                 Statement thenPart = ifStatement.getThenPart();
+                ReductionRule rule = BranchRule.classify(metrics, ifStatement, true);
                 
                 if (elsePart == null) {                    
                     Statement newThenPart = findAndReduceConditionBranches(thenPart, executionContext);
-                    if (newThenPart != thenPart) {
-                        
-                        if (needsPrefix(ifStatement, newThenPart))
-                            newThenPart = autoprefix(ifStatement, newThenPart);
-                        
-                        if (needsBraces(newThenPart))
-                            newThenPart = LSTUtils.embrace(newThenPart);
+                    if (newThenPart == thenPart)
+                        return;
                         
-                        allBlockLines.set(ifStatementPosition, 
-                                          ifStatement.withThenPart( newThenPart )
-                                          );
-                        return true;
+                    boolean reshaped = false;
+                    
+                    if (needsPrefix(ifStatement, newThenPart)) {
+                        newThenPart = autoprefix(ifStatement, newThenPart);
+                        reshaped = true;
                     }
-                    return false;
+                    
+                    if (needsBraces(newThenPart)) {
+                        newThenPart = LSTUtils.embrace(newThenPart);
+                        reshaped = true;
+                    }
+                    
+                    if (reshaped)
+                        edits.rewrite(ifStatementPosition, ifStatement.withThenPart( newThenPart ));
+                    else
+                        edits.replace(ifStatementPosition, ifStatement.withThenPart( newThenPart ));
+                    return;
                 }
                 
                 Statement elseBody = elsePart.getBody();
                 
-                if (LSTUtils.isEmpty(elseBody)) {
+                if (rule == ReductionRule.EMPTY_ELSE_REMOVAL) {
                     
                     // elsePart is empty, erasing it
                     Statement newThenPart = findAndReduceConditionBranches(thenPart, executionContext);;
@@ -420,15 +818,16 @@ public class ReduceConditionBranches extends Recipe {
                             newThenPart = LSTUtils.embrace(newThenPart);
                     }
                     
-                    allBlockLines.set(ifStatementPosition,
-                                      ifStatement
-                                        .withElsePart(null)
-                                        .withThenPart( newThenPart ));
-                                
-                    return true;
+                    edits.rewrite(ifStatementPosition,
+                                  ifStatement
+                                    .withElsePart(null)
+                                    .withThenPart( newThenPart ));
+                    
+                    applied(rule, startNanos, ruleEvent, ifStatement);
+                    return;
                 }
 
-                if (LSTUtils.isEmpty(thenPart)) {
+                if (rule == ReductionRule.EMPTY_THEN_SWAP) {
                     // the else part contains logic while the then part is empty - let's replace it with the else branch
                     Statement newThenPart = findAndReduceConditionBranches(elseBody, executionContext);
                     
@@ -440,19 +839,20 @@ public class ReduceConditionBranches extends Recipe {
                     
                     J.If modifiedStatement = 
                             ifStatement.withIfCondition( 
-                                    MyInvertCondition.invert(ifStatement.getIfCondition(), getCursor())
+                                    MyInvertCondition.invert(ifStatement.getIfCondition(), getCursor(), executionContext)
                                     )
                                 .withThenPart( 
                                         newThenPart
                                     )
                                 .withElsePart(null);
                     
-                    allBlockLines.set(ifStatementPosition, modifiedStatement);
+                    edits.rewrite(ifStatementPosition, modifiedStatement);
                     
-                    return true;
+                    applied(rule, startNanos, ruleEvent, ifStatement);
+                    return;
                 }
                 
-                if (LSTUtils.hasGuaranteedReturn(thenPart)) {                
+                if (rule == ReductionRule.THEN_RETURN_FLATTENING) {
                     // the thenPart has guaranteed return: 
                     // the elsePart shall get flattened.
                     
@@ -474,13 +874,14 @@ public class ReduceConditionBranches extends Recipe {
                                         )
                                     .withElsePart(null);
                     
-                    allBlockLines.set(ifStatementPosition, modifiedStatement);
-                    insertFlattened(allBlockLines, ifStatementPosition+1, findAndReduceConditionBranches(elseBody, executionContext) );
+                    edits.rewrite(ifStatementPosition, modifiedStatement);
+                    edits.spliceAfter(ifStatementPosition, findAndReduceFlattened(elseBody, executionContext));
                     
-                    return true;
+                    applied(rule, startNanos, ruleEvent, ifStatement);
+                    return;
                 }
                 
-                if (LSTUtils.hasGuaranteedReturn(elseBody)) {
+                if (rule == ReductionRule.ELSE_RETURN_FLATTENING) {
                     // the elsePart has guaranteed return:
                     // make it the thenPart, and flatten the thenPart instead.
 
@@ -495,32 +896,29 @@ public class ReduceConditionBranches extends Recipe {
                     
                     J.If modifiedStatement = 
                                 ifStatement.withIfCondition( 
-                                        MyInvertCondition.invert(ifStatement.getIfCondition(), getCursor())                                        
+                                        MyInvertCondition.invert(ifStatement.getIfCondition(), getCursor(), executionContext)                                        
                                         )
                                     .withThenPart(
                                         newThenPart
                                         )
                                     .withElsePart(null);
                     
-                    allBlockLines.set(ifStatementPosition, modifiedStatement);
-                    insertFlattened(allBlockLines, ifStatementPosition+1, findAndReduceConditionBranches(thenPart, executionContext));
+                    edits.rewrite(ifStatementPosition, modifiedStatement);
+                    edits.spliceAfter(ifStatementPosition, findAndReduceFlattened(thenPart, executionContext));
                     
-                    return true;
+                    applied(rule, startNanos, ruleEvent, ifStatement);
+                    return;
                 }
 
                 Statement newElseBody = findAndReduceConditionBranches(elseBody, executionContext);
                 Statement newThenBody = findAndReduceConditionBranches(thenPart, executionContext);
                 
-                boolean changed = newElseBody != elseBody || newThenBody != thenPart;
-                
-                if (changed) {
-                    allBlockLines.set(ifStatementPosition, 
-                                      ifStatement
-                                          .withThenPart(newThenBody)
-                                          .withElsePart( elsePart.withBody(newElseBody)) );
+                if (newElseBody != elseBody || newThenBody != thenPart) {
+                    edits.replace(ifStatementPosition, 
+                                  ifStatement
+                                      .withThenPart(newThenBody)
+                                      .withElsePart( elsePart.withBody(newElseBody)) );
                 }
-                
-                return changed;
             }
             
             private boolean needsPrefix(J.If originalIf, Statement thenPart) {
@@ -546,7 +944,34 @@ public class ReduceConditionBranches extends Recipe {
                 if (statement instanceof J.Try)
                     return false;
                 
-                return CountLinesVisitor.countLines(statement) > 2; 
+                return metrics.spansMoreThan(statement, 2); 
+            }
+            
+            /*** formats only the touched statements (with their subtrees), in the indentation context of their new place */
+            private MethodDeclaration autoformatTouched(MethodDeclaration method, ExecutionContext executionContext) {
+                if (touchedStatements.isEmpty())
+                    return method;
+                
+                AutoformatEvent event = new AutoformatEvent();
+                event.begin();
+                
+                Set<UUID> touched = touchedStatements;
+                MethodDeclaration ret = (MethodDeclaration) new JavaVisitor<ExecutionContext>() {
+                    @Override
+                    public J visit(@Nullable Tree tree, ExecutionContext p) {
+                        if (tree instanceof Statement && touched.contains(tree.getId()))
+                            return autoformat((Statement) tree, p, new Cursor(getCursor(), tree));
+                        
+                        return super.visit(tree, p);
+                    }
+                }.visit(method, executionContext, getCursor().getParentOrThrow());
+                
+                if (event.shouldCommit()) {
+                    event.method = method.getSimpleName();
+                    event.statements = touched.size();
+                    event.commit();
+                }
+                return ret;
             }
             
             private <T extends Tree> T autoformat(T method, ExecutionContext executionContext, Cursor cursor) {
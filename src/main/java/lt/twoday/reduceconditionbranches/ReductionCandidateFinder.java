@@ -0,0 +1,251 @@
+package lt.twoday.reduceconditionbranches;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lt.twoday.openrewrite.DeepNesting;
+import lt.twoday.openrewrite.LineRanges;
+import lt.twoday.openrewrite.MethodBudget;
+import lt.twoday.openrewrite.MethodsOverBudget;
+import lt.twoday.openrewrite.SubtreeMetrics;
+import lt.twoday.openrewrite.TargetedMethods;
+
+/***
+ * report-only counterpart of the ReduceConditionBranches visitor.
+ *
+ * Walks the methods along the same decisions as the rewriting visitor, but only reports
+ * which rule would fire on which conditional: no nodes are built, no conditions inverted, nothing formatted,
+ * and subtree facts are computed only for the branches a decision actually looks at.
+ * Each conditional is reported once, as seen in the original source.
+ * Methods over the budget of the recipe are reported in {@link MethodsOverBudget} instead of their candidates,
+ * the wall time being checked once the method was walked: the walk is cheap, only the report of a slow one is dropped.
+ */
+class ReductionCandidateFinder extends JavaIsoVisitor<ExecutionContext> {
+
+    private static final Logger log  = LoggerFactory.getLogger(ReductionCandidateFinder.class);
+
+    private final SingleIfRules singleIfRules;
+    private final ReductionCandidates candidates;
+
+    private final MethodBudget budget;
+    private final MethodsOverBudget methodsOverBudget;
+
+    private final Map<String, LineRanges> lineRangesByPath;
+
+    private SubtreeMetrics metrics = new SubtreeMetrics();
+    private MethodBudget.Deadline deadline = MethodBudget.UNLIMITED.start();
+
+    // candidates of the outermost method being walked, reported once it turned out within the budget
+    private final List<ReductionCandidates.Row> methodCandidates = new ArrayList<>();
+
+    // the methods of the source file being visited to look at, null if all of them
+    @Nullable
+    private TargetedMethods targetedMethods = null;
+    private int methodDepth = 0;
+
+    // conditionals of the source file being visited already decided upon by a method walk
+    private final Set<J.If> reviewed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    ReductionCandidateFinder(SingleIfRules singleIfRules, ReductionCandidates candidates, 
+                             MethodBudget budget, MethodsOverBudget methodsOverBudget,
+                             Map<String, LineRanges> lineRangesByPath) {
+        this.singleIfRules = singleIfRules;
+        this.candidates = candidates;
+        this.budget = budget;
+        this.methodsOverBudget = methodsOverBudget;
+        this.lineRangesByPath = lineRangesByPath;
+    }
+
+    @Override
+    public J.CompilationUnit visitCompilationUnit(J.CompilationUnit compUnit, ExecutionContext executionContext) {
+        targetedMethods = TargetedMethods.of(compUnit, executionContext, lineRangesByPath);
+        try {
+            return super.visitCompilationUnit(compUnit, executionContext);
+        } finally {
+            reviewed.clear();
+        }
+    }
+
+    @Override
+    public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, ExecutionContext executionContext) {
+        J.Block methodBody = method.getBody();
+        if (methodBody == null)
+            return super.visitMethodDeclaration(method, executionContext);
+
+        if (targetedMethods != null && !targetedMethods.isTargeted(method))
+            return method;
+
+        int depth = DeepNesting.depthOf(methodBody);
+        String overBudget = budget.exceededBy(depth, methodBody);
+        if (overBudget != null) {
+            methodsOverBudget.record(executionContext, getCursor(), method, overBudget);
+            return method;
+        }
+
+        return DeepNesting.call(depth, 
+                                () -> reviewMethodDeclaration(method, executionContext));
+    }
+
+    private J.MethodDeclaration reviewMethodDeclaration(J.MethodDeclaration method, ExecutionContext executionContext) {
+        SubtreeMetrics enclosingMetrics = metrics;
+        MethodBudget.Deadline enclosingDeadline = deadline;
+        int firstCandidate = methodCandidates.size();
+        metrics = new SubtreeMetrics();
+        deadline = budget.start();
+        methodDepth++;
+        try {
+            reviewMethod(method.getBody(), executionContext);
+            J.MethodDeclaration ret = super.visitMethodDeclaration(method, executionContext);
+
+            if (deadline.passed()) {
+                methodCandidates.subList(firstCandidate, methodCandidates.size()).clear();
+                methodsOverBudget.record(executionContext, getCursor(), method, budget.timeExceeded());
+            }
+            return ret;
+        } finally {
+            metrics = enclosingMetrics;
+            deadline = enclosingDeadline;
+            methodDepth--;
+
+            if (methodDepth == 0) {
+                for (ReductionCandidates.Row row: methodCandidates)
+                    insert(row, executionContext);
+                methodCandidates.clear();
+            }
+        }
+    }
+
+    @Override
+    public J.If visitIf(J.If iff, ExecutionContext executionContext) {
+        if (targetedMethods != null && methodDepth == 0)
+            return iff; // only methods are targeted by line
+
+        if (reviewed.add(iff)) {
+            ReductionRule rule = BranchRule.classify(metrics, iff, false);
+            if (rule != null)
+                report(iff, rule, executionContext);
+            
+            if (rule == ReductionRule.EMPTY_THEN_SWAP)
+                findIn(iff.getElsePart().getBody(), executionContext);
+        }
+
+        return super.visitIf(iff, executionContext);
+    }
+
+    private void reviewMethod(J.Block block, ExecutionContext executionContext) {
+        if (block.getStatements().size() == 1 && block.getStatements().get(0) instanceof J.If) {
+            J.If iff = (J.If) block.getStatements().get(0);
+
+            SingleIfRule rule = singleIfRules.classify(metrics, iff);
+            if (rule != null) {
+                reviewed.add(iff);
+                report(iff, rule.getRewrite(), executionContext);
+                findIn(iff.getThenPart(), executionContext);
+                if (iff.getElsePart() != null)
+                    findIn(iff.getElsePart().getBody(), executionContext);
+                return;
+            }
+        }
+
+        findIn(block, executionContext);
+    }
+
+    /*** a branch that stays a branch; conditionals standing alone in it are left to {@link #visitIf} */
+    private void findIn(Statement statement, ExecutionContext executionContext) {
+        if (statement instanceof J.Block)
+            for (Statement st: ((J.Block) statement).getStatements())
+                findInBlockStatement(st, executionContext);
+
+        if (statement instanceof J.Try)
+            findIn(((J.Try) statement).getBody(), executionContext);
+    }
+
+    /*** a branch that would be inlined into the enclosing block */
+    private void findInFlattened(Statement branch, ExecutionContext executionContext) {
+        for (Statement st: BlockEdits.flatten(branch))
+            findInBlockStatement(st, executionContext);
+    }
+
+    private void findInBlockStatement(Statement statement, ExecutionContext executionContext) {
+        if (statement instanceof J.If)
+            decide((J.If) statement, executionContext);
+        else
+            findIn(statement, executionContext);
+    }
+
+    /*** the descent of ReduceConditionBranches#reduceConditionBranches after the rule it applies */
+    private void decide(J.If iff, ExecutionContext executionContext) {
+        reviewed.add(iff);
+
+        Statement thenPart = iff.getThenPart();
+        ReductionRule rule = BranchRule.classify(metrics, iff, true);
+
+        if (iff.getElsePart() == null) {
+            findIn(thenPart, executionContext);
+            return;
+        }
+
+        Statement elseBody = iff.getElsePart().getBody();
+
+        if (rule == null) {
+            findIn(elseBody, executionContext);
+            findIn(thenPart, executionContext);
+            return;
+        }
+
+        report(iff, rule, executionContext);
+        switch (rule) {
+            case EMPTY_ELSE_REMOVAL:
+                findIn(thenPart, executionContext);
+                break;
+            case EMPTY_THEN_SWAP:
+                findIn(elseBody, executionContext);
+                break;
+            case THEN_RETURN_FLATTENING:
+                findIn(thenPart, executionContext);
+                findInFlattened(elseBody, executionContext);
+                break;
+            case ELSE_RETURN_FLATTENING:
+                findIn(elseBody, executionContext);
+                findInFlattened(thenPart, executionContext);
+                break;
+            default:
+                throw new IllegalStateException("not a branch rule: " + rule);
+        }
+    }
+
+    private void report(J.If iff, ReductionRule rule, ExecutionContext executionContext) {
+        J.CompilationUnit compUnit = getCursor().firstEnclosing(J.CompilationUnit.class);
+        J.ClassDeclaration classDeclaration = getCursor().firstEnclosing(J.ClassDeclaration.class);
+        J.MethodDeclaration method = getCursor().firstEnclosing(J.MethodDeclaration.class);
+
+        ReductionCandidates.Row row = new ReductionCandidates.Row(
+                                            compUnit == null ? "" : compUnit.getSourcePath().toString(),
+                                            classDeclaration == null ? "" : classDeclaration.getSimpleName(),
+                                            method == null ? "" : method.getSimpleName(),
+                                            iff.getIfCondition().getTree().printTrimmed(getCursor()),
+                                            rule);
+
+        if (methodDepth > 0)
+            methodCandidates.add(row);
+        else
+            insert(row, executionContext);
+    }
+
+    private void insert(ReductionCandidates.Row row, ExecutionContext executionContext) {
+        log.info("{}: {}.{} if {} -> {}", row.getSourcePath(), row.getClassName(), row.getMethodName(), row.getCondition(), row.getRule());
+        candidates.insertRow(executionContext, row);
+    }
+}
@@ -0,0 +1,66 @@
+package lt.twoday.reduceconditionbranches;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+
+import lombok.Value;
+
+/***
+ * conditionals ReduceConditionBranches would rewrite, as found in report-only mode
+ */
+public class ReductionCandidates extends DataTable<ReductionCandidates.Row> {
+
+    public ReductionCandidates(Recipe recipe) {
+        super(recipe,
+              "Condition branch reduction candidates",
+              "Conditionals that would be rewritten, and the rule that would rewrite them.");
+    }
+
+    /*** the candidates found by any recipe within the execution context, i.e. that of a single file */
+    public static List<Row> rowsIn(ExecutionContext executionContext) {
+        Map<DataTable<?>, List<?>> dataTables = executionContext.getMessage(ExecutionContext.DATA_TABLES, Collections.emptyMap());
+
+        List<Row> ret = new ArrayList<>();
+        for (Map.Entry<DataTable<?>, List<?>> dataTable: dataTables.entrySet())
+            if (dataTable.getKey() instanceof ReductionCandidates)
+                for (Object row: dataTable.getValue())
+                    ret.add((Row) row);
+
+        return ret;
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The source file of the conditional.")
+        String sourcePath;
+
+        @Column(displayName = "Class",
+                description = "The simple name of the class declaring the method.")
+        String className;
+
+        @Column(displayName = "Method",
+                description = "The method the conditional is in.")
+        String methodName;
+
+        @Column(displayName = "Condition",
+                description = "The condition of the if statement, without its parentheses.")
+        String condition;
+
+        @Column(displayName = "Rule",
+                description = "The reduction rule that would be applied.")
+        ReductionRule rule;
+
+        /*** one line, i.e. {@code src/A.java: A.test if (a > 0) -> EMPTY_ELSE_REMOVAL} */
+        public String format() {
+            return sourcePath + ": " + className + "." + methodName + " if (" + condition.replaceAll("\\s+", " ") + ") -> " + rule;
+        }
+    }
+}
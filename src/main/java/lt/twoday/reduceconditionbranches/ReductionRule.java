@@ -0,0 +1,28 @@
+package lt.twoday.reduceconditionbranches;
+
+/***
+ * the rewrites ReduceConditionBranches knows how to apply
+ */
+public enum ReductionRule {
+
+    /*** single-if method with an empty then part: return early, inline the else part */
+    TYPE_A_METHOD_BODY,
+
+    /*** single-if method: invert the condition, return early with the else part, inline the then part */
+    TYPE_B_METHOD_BODY,
+
+    /*** single-if method: return early with the then part, inline the else part */
+    TYPE_C_METHOD_BODY,
+
+    /*** an empty else part gets dropped */
+    EMPTY_ELSE_REMOVAL,
+
+    /*** an empty then part gets replaced by the else part under the inverted condition */
+    EMPTY_THEN_SWAP,
+
+    /*** the then part always returns, so the else part gets inlined after the if */
+    THEN_RETURN_FLATTENING,
+
+    /*** the else part always returns, so it becomes the then part and the former then part gets inlined */
+    ELSE_RETURN_FLATTENING
+}
@@ -0,0 +1,38 @@
+package lt.twoday.reduceconditionbranches;
+
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+import lombok.Value;
+
+/***
+ * how often each reduction rule fired in a source file, and how long it took
+ */
+public class ReductionRuleStats extends DataTable<ReductionRuleStats.Row> {
+
+    public ReductionRuleStats(Recipe recipe) {
+        super(recipe,
+              "Condition branch reduction rules",
+              "How often each reduction rule fired per source file and the time spent applying it.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The source file the rule was applied to.")
+        String sourcePath;
+
+        @Column(displayName = "Rule",
+                description = "The reduction rule.")
+        ReductionRule rule;
+
+        @Column(displayName = "Applications",
+                description = "How many times the rule was applied in the source file.")
+        int applications;
+
+        @Column(displayName = "Nanoseconds",
+                description = "Time spent applying the rule, including the reductions nested inside the rewritten branches.")
+        long nanos;
+    }
+}
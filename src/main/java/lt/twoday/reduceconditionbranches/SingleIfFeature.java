@@ -0,0 +1,73 @@
+package lt.twoday.reduceconditionbranches;
+
+import org.openrewrite.java.tree.J;
+
+import lt.twoday.openrewrite.SubtreeMetrics;
+
+/***
+ * facts about the branches of a single-if method body that {@link SingleIfRule}s are decided on.
+ *
+ * Each feature is one bit of a feature mask. Constants are declared cheapest first,
+ * which is the order {@link SingleIfRules} computes them in.
+ */
+public enum SingleIfFeature {
+
+    THEN_EMPTY {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.isEmpty(iff.getThenPart());
+        }
+    },
+
+    ELSE_EMPTY {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.isEmpty(iff.getElsePart());
+        }
+    },
+
+    THEN_THROWS {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.isThrow(iff.getThenPart());
+        }
+    },
+
+    ELSE_THROWS {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.isThrow(iff.getElsePart());
+        }
+    },
+
+    /*** then part spans more than {@link #LONG_LINES} lines */
+    THEN_LONG {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.spansMoreThan(iff.getThenPart(), LONG_LINES);
+        }
+    },
+
+    /*** else part spans more than {@link #LONG_LINES} lines */
+    ELSE_LONG {
+        @Override
+        boolean test(SubtreeMetrics metrics, J.If iff) {
+            return metrics.spansMoreThan(iff.getElsePart(), LONG_LINES);
+        }
+    };
+
+    public static final int LONG_LINES = 2;
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    abstract boolean test(SubtreeMetrics metrics, J.If iff);
+
+    public static int maskOf(SingleIfFeature... features) {
+        int ret = 0;
+        for (SingleIfFeature feature: features)
+            ret |= feature.bit();
+        return ret;
+    }
+}
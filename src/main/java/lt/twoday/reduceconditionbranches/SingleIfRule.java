@@ -0,0 +1,36 @@
+package lt.twoday.reduceconditionbranches;
+
+import lombok.Value;
+
+/***
+ * a single-if method body rewrite, chosen when all of the {@code present} features
+ * and none of the {@code absent} features hold
+ */
+@Value
+public class SingleIfRule {
+
+    String name;
+    int present;
+    int absent;
+    ReductionRule rewrite;
+
+    public SingleIfRule(String name, int present, int absent, ReductionRule rewrite) {
+        if (rewrite != ReductionRule.TYPE_A_METHOD_BODY 
+                && rewrite != ReductionRule.TYPE_B_METHOD_BODY 
+                && rewrite != ReductionRule.TYPE_C_METHOD_BODY)
+            throw new IllegalArgumentException("not a method body rewrite: " + rewrite);
+
+        if ((present & absent) != 0)
+            throw new IllegalArgumentException("rule " + name + " requires a feature to be both present and absent");
+
+        this.name = name;
+        this.present = present;
+        this.absent = absent;
+        this.rewrite = rewrite;
+    }
+
+    public boolean matches(int featureMask) {
+        return (featureMask & present) == present
+            && (featureMask & absent) == 0;
+    }
+}
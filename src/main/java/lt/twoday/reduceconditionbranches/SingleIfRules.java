@@ -0,0 +1,142 @@
+package lt.twoday.reduceconditionbranches;
+
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.ELSE_EMPTY;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.ELSE_LONG;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.ELSE_THROWS;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.THEN_EMPTY;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.THEN_LONG;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.THEN_THROWS;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.maskOf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+
+import lt.twoday.openrewrite.SubtreeMetrics;
+
+/***
+ * ordered set of {@link SingleIfRule}s deciding how a single-if method body gets rewritten; the first matching rule wins.
+ *
+ * The rules are compiled into a decision table over every combination of known and unknown features,
+ * so {@link #classify(SubtreeMetrics, J.If)} computes features cheapest first, only until the outcome can no longer change.
+ * Instances are immutable: {@link #register(SingleIfRule)} and {@link #disable(Collection)} return modified copies.
+ */
+public class SingleIfRules {
+
+    private static final int FEATURES = SingleIfFeature.values().length;
+    private static final int MASKS = 1 << FEATURES;
+
+    private static final int UNDECIDED = -2;
+    private static final int NO_RULE = -1;
+
+    private static final SingleIfRules DEFAULTS = new SingleIfRules(List.of(
+            new SingleIfRule("emptyThenLongElse",    maskOf(THEN_EMPTY, ELSE_LONG), 0,                                ReductionRule.TYPE_A_METHOD_BODY),
+            new SingleIfRule("emptyElseLongThen",    maskOf(ELSE_EMPTY, THEN_LONG), maskOf(THEN_THROWS),              ReductionRule.TYPE_B_METHOD_BODY),
+            new SingleIfRule("throwingElse",         maskOf(ELSE_THROWS),           maskOf(THEN_THROWS),              ReductionRule.TYPE_B_METHOD_BODY),
+            new SingleIfRule("throwingThen",         maskOf(THEN_THROWS),           0,                                ReductionRule.TYPE_C_METHOD_BODY),
+            new SingleIfRule("shortElseLongThen",    maskOf(THEN_LONG),             maskOf(ELSE_EMPTY, ELSE_LONG),    ReductionRule.TYPE_B_METHOD_BODY),
+            new SingleIfRule("bothBranches",         0,                             maskOf(THEN_EMPTY, ELSE_EMPTY),   ReductionRule.TYPE_C_METHOD_BODY)
+        ));
+
+    private final List<SingleIfRule> rules;
+
+    // indexed by (known features << FEATURES | feature values): the rule index, NO_RULE or UNDECIDED
+    private final int[] decisions = new int[MASKS * MASKS];
+
+    public SingleIfRules(List<SingleIfRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        compile();
+    }
+
+    public static SingleIfRules defaults() {
+        return DEFAULTS;
+    }
+
+    public List<SingleIfRule> getRules() {
+        return rules;
+    }
+
+    /*** a copy with the rule appended, i.e. consulted after all the present ones */
+    public SingleIfRules register(SingleIfRule rule) {
+        List<SingleIfRule> ret = new ArrayList<>(rules);
+        ret.add(rule);
+        return new SingleIfRules(ret);
+    }
+
+    /*** a copy without the rules of the given names */
+    public SingleIfRules disable(Collection<String> ruleNames) {
+        List<SingleIfRule> ret = new ArrayList<>();
+        for (SingleIfRule rule: rules)
+            if (!ruleNames.contains(rule.getName()))
+                ret.add(rule);
+        return new SingleIfRules(ret);
+    }
+
+    /*** the first rule matching the single-if method body, or null */
+    @Nullable
+    public SingleIfRule classify(SubtreeMetrics metrics, J.If iff) {
+        int known = 0;
+        int values = 0;
+
+        for (SingleIfFeature feature: SingleIfFeature.values()) {
+            int decision = decisions[known << FEATURES | values];
+            if (decision != UNDECIDED)
+                return decision == NO_RULE ? null : rules.get(decision);
+
+            known |= feature.bit();
+            if (feature.test(metrics, iff))
+                values |= feature.bit();
+        }
+
+        int decision = decisions[known << FEATURES | values];
+        return decision == NO_RULE ? null : rules.get(decision);
+    }
+
+    /*** the first rule matching a fully known feature mask, or null */
+    @Nullable
+    public SingleIfRule decide(int featureMask) {
+        int decision = decisions[(MASKS-1) << FEATURES | featureMask];
+        return decision == NO_RULE ? null : rules.get(decision);
+    }
+
+    private void compile() {
+        int[] outcomes = new int[MASKS];
+        for (int mask=0; mask < MASKS; mask++)
+            outcomes[mask] = firstMatch(mask);
+
+        for (int known=0; known < MASKS; known++) {
+            for (int values=0; values < MASKS; values++) {
+                if ((values & ~known) != 0)
+                    continue;
+
+                decisions[known << FEATURES | values] = unanimous(outcomes, known, values);
+            }
+        }
+    }
+
+    private int firstMatch(int mask) {
+        for (int i=0; i < rules.size(); i++)
+            if (rules.get(i).matches(mask))
+                return i;
+        return NO_RULE;
+    }
+
+    /*** the outcome shared by all feature masks agreeing with the known feature values, or UNDECIDED */
+    private static int unanimous(int[] outcomes, int known, int values) {
+        int ret = UNDECIDED;
+        for (int mask=0; mask < MASKS; mask++) {
+            if ((mask & known) != values)
+                continue;
+
+            if (ret == UNDECIDED)
+                ret = outcomes[mask];
+            else if (ret != outcomes[mask])
+                return UNDECIDED;
+        }
+        return ret;
+    }
+}
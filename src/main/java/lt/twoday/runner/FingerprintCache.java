@@ -0,0 +1,241 @@
+package lt.twoday.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openrewrite.Recipe;
+import org.openrewrite.config.OptionDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * remembers on disk which source contents came out of the recipes byte-identical,
+ * so that following runs can skip parsing and visiting them.
+ *
+ * Entries are SHA-256 hashes of the source content. The index file starts with the recipe key
+ * (recipe names, their option values and a hash of the jar or class directory they were loaded from);
+ * an index written under a different key is discarded as a whole.
+ *
+ * Fingerprints of sources that were edited since never hit again, so the index is kept to at most
+ * {@link #MAX_ENTRIES}: it is written with the entries hit or recorded in the run first, then the loaded ones
+ * in their order, dropping the oldest past the limit. A partial run (i.e. {@code --since}) keeps the entries of the files it did not see.
+ */
+public class FingerprintCache {
+
+    public static final String INDEX_FILE = "unchanged-sources.idx";
+
+    /*** about 16 MB of index, more than the sources of most trees */
+    public static final int MAX_ENTRIES = 250_000;
+
+    private static final String KEY_HEADER = "# recipe-key ";
+
+    private static final Logger log  = LoggerFactory.getLogger(FingerprintCache.class);
+
+    private static final Map<Path, String> codeSourceHashes = new ConcurrentHashMap<>();
+
+    private final Path indexFile;
+    private final String recipeKey;
+    private final int maxEntries;
+
+    private final Set<String> unchanged = ConcurrentHashMap.newKeySet();
+    // in the order of the index file, the most recently used first
+    private final List<String> loaded = new ArrayList<>();
+    // hit or recorded in this run
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+
+    private FingerprintCache(Path indexFile, String recipeKey, int maxEntries) {
+        this.indexFile = indexFile;
+        this.recipeKey = recipeKey;
+        this.maxEntries = maxEntries;
+    }
+
+    public static FingerprintCache open(Path directory, Collection<? extends Recipe> recipes) throws IOException {
+        return open(directory, recipeKey(recipes));
+    }
+
+    public static FingerprintCache open(Path directory, String recipeKey) throws IOException {
+        return open(directory, recipeKey, MAX_ENTRIES);
+    }
+
+    static FingerprintCache open(Path directory, String recipeKey, int maxEntries) throws IOException {
+        FingerprintCache ret = new FingerprintCache(directory.resolve(INDEX_FILE), recipeKey, maxEntries);
+        ret.load();
+        return ret;
+    }
+
+    public boolean isUnchanged(byte[] content) {
+        String fingerprint = fingerprint(content);
+        if (unchanged.contains(fingerprint)) {
+            used.add(fingerprint);
+            hits.incrementAndGet();
+            return true;
+        }
+
+        misses.incrementAndGet();
+        return false;
+    }
+
+    public void recordUnchanged(byte[] content) {
+        String fingerprint = fingerprint(content);
+        used.add(fingerprint);
+        if (unchanged.add(fingerprint))
+            recorded.incrementAndGet();
+    }
+
+    /*** writes the index if entries were recorded: the ones used in this run, then the loaded ones, up to the limit */
+    public void save() throws IOException {
+        if (recorded.get() == 0 && Files.exists(indexFile))
+            return;
+
+        Set<String> kept = new LinkedHashSet<>(used);
+        for (String fingerprint: loaded) {
+            if (kept.size() >= maxEntries)
+                break;
+            kept.add(fingerprint);
+        }
+
+        Files.createDirectories(indexFile.getParent());
+
+        Path tmp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, UTF_8)) {
+            out.write(KEY_HEADER + recipeKey);
+            out.newLine();
+            int written = 0;
+            for (String fingerprint: kept) {
+                if (written++ >= maxEntries)
+                    break;
+                out.write(fingerprint);
+                out.newLine();
+            }
+        }
+
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return unchanged.size();
+    }
+
+    @Override
+    public String toString() {
+        return "fingerprint cache " + indexFile + ": " + hits + " hits, " + misses + " misses, " + recorded + " new entries";
+    }
+
+    private void load() throws IOException {
+        if (!Files.isRegularFile(indexFile))
+            return;
+
+        List<String> lines = Files.readAllLines(indexFile, UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(KEY_HEADER + recipeKey)) {
+            log.info("recipes or their options changed, discarding {}", indexFile);
+            return;
+        }
+
+        loaded.addAll(lines.subList(1, lines.size()));
+        unchanged.addAll(loaded);
+        log.debug("loaded {} unchanged source fingerprints from {}", unchanged.size(), indexFile);
+    }
+
+    public static String fingerprint(byte[] content) {
+        return toHex(sha256().digest(content));
+    }
+
+    /*** identifies the recipes, their option values and the code they were loaded from */
+    public static String recipeKey(Collection<? extends Recipe> recipes) {
+        MessageDigest digest = sha256();
+
+        for (Recipe recipe: recipes) {
+            digest.update(recipe.getName().getBytes(UTF_8));
+
+            for (OptionDescriptor option: recipe.getDescriptor().getOptions())
+                digest.update((";" + option.getName() + "=" + option.getValue()).getBytes(UTF_8));
+
+            digest.update(codeSourceHash(recipe.getClass()).getBytes(UTF_8));
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private static String codeSourceHash(Class<?> clazz) {
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null)
+            return "";
+
+        try {
+            Path location = Paths.get(codeSource.getLocation().toURI());
+            return codeSourceHashes.computeIfAbsent(location, FingerprintCache::hashLocation);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            log.warn("can not locate the code source of {}, cache will not notice recipe changes", clazz, e);
+            return codeSource.getLocation().toString();
+        }
+    }
+
+    private static String hashLocation(Path location) {
+        MessageDigest digest = sha256();
+
+        try (Stream<Path> files = Files.isDirectory(location) ? Files.walk(location) : Stream.of(location)) {
+            for (Path file: files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                digest.update(location.relativize(file).toString().getBytes(UTF_8));
+                try (InputStream in = Files.newInputStream(file)) {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) > 0)
+                        digest.update(buffer, 0, read);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("can not fingerprint " + location, e);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder ret = new StringBuilder(bytes.length * 2);
+        for (byte b: bytes)
+            ret.append(Character.forDigit((b >> 4) & 0xF, 16))
+               .append(Character.forDigit(b & 0xF, 16));
+        return ret.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package lt.twoday.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lt.twoday.openrewrite.LineRanges;
+
+/***
+ * java sources changed since a base revision, as told by the local git working copy (the git command line, no network).
+ *
+ * Changed are the sources committed since the branch forked off the base revision (its merge base with HEAD),
+ * sources modified in the working copy but not committed yet and new untracked sources. Deleted sources are left out.
+ *
+ * {@link #changedLines} tells the lines added or modified in the tracked ones, by the hunks of a zero-context diff.
+ */
+public class GitChangedSources {
+
+    private static final Logger log  = LoggerFactory.getLogger(GitChangedSources.class);
+
+    // @@ -a[,b] +c[,d] @@
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -\\d+(?:,\\d+)? \\+(\\d+)(?:,(\\d+))? @@");
+
+    public static List<Path> since(String baseRevision, List<Path> sourceRoots) throws IOException {
+        Set<Path> ret = new LinkedHashSet<>();
+        for (Path sourceRoot: sourceRoots)
+            ret.addAll(since(baseRevision, sourceRoot));
+        return new ArrayList<>(ret);
+    }
+
+    public static List<Path> since(String baseRevision, Path sourceRoot) throws IOException {
+        // git reports real paths
+        Path root = sourceRoot.toRealPath();
+        Path topLevel = Paths.get(git(root, "rev-parse", "--show-toplevel").trim());
+        String mergeBase = git(root, "merge-base", baseRevision, "HEAD").trim();
+
+        Set<Path> ret = new LinkedHashSet<>();
+        addSources(ret, topLevel, root, git(root, "diff", "--name-only", "-z", "--no-renames", "--diff-filter=d", mergeBase, "--", "."));
+        addSources(ret, topLevel, root, git(root, "ls-files", "-z", "--others", "--exclude-standard", "--full-name", "--", "."));
+
+        log.info("{} java sources under {} changed since {} ({})", ret.size(), sourceRoot, baseRevision, mergeBase);
+        return new ArrayList<>(ret);
+    }
+
+    /*** changed lines of the tracked java sources changed since the base revision; untracked sources have no entry, as they changed as a whole */
+    public static Map<Path, LineRanges> changedLines(String baseRevision, List<Path> sourceRoots) throws IOException {
+        Map<Path, LineRanges> ret = new HashMap<>();
+        for (Path sourceRoot: sourceRoots)
+            ret.putAll(changedLines(baseRevision, sourceRoot));
+        return ret;
+    }
+
+    public static Map<Path, LineRanges> changedLines(String baseRevision, Path sourceRoot) throws IOException {
+        Path root = sourceRoot.toRealPath();
+        Path topLevel = Paths.get(git(root, "rev-parse", "--show-toplevel").trim());
+        String mergeBase = git(root, "merge-base", baseRevision, "HEAD").trim();
+
+        String diff = git(root, "-c", "core.quotePath=false", "diff", "-U0", "--no-color", "--no-ext-diff", "--no-renames", 
+                                "--diff-filter=d", "--src-prefix=a/", "--dst-prefix=b/", mergeBase, "--", ".");
+
+        Map<Path, LineRanges> ret = new HashMap<>();
+        Path file = null;
+        List<int[]> ranges = new ArrayList<>();
+        // added or removed lines may look like file headers too
+        boolean inFileHeader = false;
+        for (String line: diff.split("\n")) {
+            if (line.startsWith("diff --git ")) {
+                inFileHeader = true;
+                continue;
+            }
+
+            if (inFileHeader && line.startsWith("+++ ")) {
+                addRanges(ret, file, ranges);
+                file = line.startsWith("+++ b/") ? topLevel.resolve(line.substring(6)).normalize() : null;
+                if (file != null && !(file.startsWith(root) && file.toString().endsWith(".java")))
+                    file = null;
+                ranges = new ArrayList<>();
+                continue;
+            }
+
+            Matcher hunk = HUNK_HEADER.matcher(line);
+            if (hunk.find()) {
+                inFileHeader = false;
+                if (file == null)
+                    continue;
+
+                int first = Integer.parseInt(hunk.group(1));
+                int count = hunk.group(2) == null ? 1 : Integer.parseInt(hunk.group(2));
+                // lines only removed: the lines around the removal changed meaning
+                ranges.add(count == 0 ? new int[] {first, first + 1} : new int[] {first, first + count - 1});
+            }
+        }
+        addRanges(ret, file, ranges);
+
+        log.info("changed lines of {} java sources under {} since {} ({})", ret.size(), sourceRoot, baseRevision, mergeBase);
+        return ret;
+    }
+
+    private static void addRanges(Map<Path, LineRanges> ret, Path file, List<int[]> ranges) {
+        if (file != null && !ranges.isEmpty())
+            ret.put(file, LineRanges.of(ranges));
+    }
+
+    /*** @param paths NUL separated paths, relative to the top level of the working copy */
+    private static void addSources(Set<Path> ret, Path topLevel, Path sourceRoot, String paths) {
+        for (String path: paths.split("\0")) {
+            if (!path.endsWith(".java"))
+                continue;
+
+            Path file = topLevel.resolve(path).normalize();
+            if (file.startsWith(sourceRoot) && Files.isRegularFile(file))
+                ret.add(file);
+        }
+    }
+
+    private static String git(Path directory, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+
+        Process process = new ProcessBuilder(command)
+                                .directory(directory.toFile())
+                                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                                .start();
+        try {
+            process.getOutputStream().close();
+            String out = readAll(process.getInputStream());
+
+            int exitCode = process.waitFor();
+            if (exitCode != 0)
+                throw new IOException(String.join(" ", command) + " in " + directory + " exited with " + exitCode);
+
+            return out;
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while running " + String.join(" ", command), e);
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0)
+            ret.write(buffer, 0, read);
+        return new String(ret.toByteArray(), UTF_8);
+    }
+}
@@ -0,0 +1,134 @@
+package lt.twoday.runner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import lt.twoday.reduceconditionbranches.ReductionCandidates;
+
+/***
+ * counts processed files by outcome and watches the heap; safe to update from several threads.
+ *
+ * The peak heap comes from the peak usage of the heap memory pools since the run started.
+ * The peak retained heap is the largest heap found live after a garbage collection, sampled as files complete:
+ * with a bounded number of files in flight, that is mostly the trees of the files being processed.
+ *
+ * The reduction candidates of a report-only run are collected from the execution context of each file,
+ * which is dropped once the file is done.
+ */
+public class RunStatistics {
+
+    public enum Outcome {
+        /*** skipped because the fingerprint cache knows the content yields no change */
+        CACHED,
+        /*** left alone without parsing: excluded path, over the size limit or generated */
+        SKIPPED,
+        UNCHANGED,
+        CHANGED,
+        FAILED
+    }
+
+    private final Map<Outcome, LongAdder> counts = new EnumMap<>(Outcome.class);
+
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos = 0;
+
+    private final LongAccumulator peakRetainedHeap = new LongAccumulator(Math::max, 0);
+    private volatile long peakHeap = 0;
+
+    private final List<ReductionCandidates.Row> reductionCandidates = new ArrayList<>();
+
+    public RunStatistics() {
+        for (Outcome outcome: Outcome.values())
+            counts.put(outcome, new LongAdder());
+
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+    }
+
+    public void add(Outcome outcome) {
+        counts.get(outcome).increment();
+    }
+
+    public long get(Outcome outcome) {
+        return counts.get(outcome).sum();
+    }
+
+    public synchronized void addReductionCandidates(List<ReductionCandidates.Row> candidates) {
+        reductionCandidates.addAll(candidates);
+    }
+
+    /*** by source path, in the order found within a file */
+    public synchronized List<ReductionCandidates.Row> getReductionCandidates() {
+        List<ReductionCandidates.Row> ret = new ArrayList<>(reductionCandidates);
+        ret.sort(Comparator.comparing(ReductionCandidates.Row::getSourcePath));
+        return ret;
+    }
+
+    public long getFileCount() {
+        long ret = 0;
+        for (LongAdder count: counts.values())
+            ret += count.sum();
+        return ret;
+    }
+
+    public void sampleRetainedHeap() {
+        long retained = 0;
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterCollection = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (afterCollection != null)
+                retained += afterCollection.getUsed();
+        }
+        peakRetainedHeap.accumulate(retained);
+    }
+
+    public void finish() {
+        endNanos = System.nanoTime();
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        peakHeap = peak;
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeap;
+    }
+
+    public long getPeakRetainedHeapBytes() {
+        return peakRetainedHeap.get();
+    }
+
+    public double getSeconds() {
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return (end - startNanos) / 1e9;
+    }
+
+    public double getFilesPerSecond() {
+        double seconds = getSeconds();
+        return seconds > 0 ? getFileCount() / seconds : 0;
+    }
+
+    @Override
+    public String toString() {
+        return getFileCount() + " files in " + String.format("%.2f", getSeconds()) + "s"
+                + " (" + String.format("%.1f", getFilesPerSecond()) + " files/s)"
+                + " (changed: " + get(Outcome.CHANGED)
+                + ", unchanged: " + get(Outcome.UNCHANGED)
+                + ", cached: " + get(Outcome.CACHED)
+                + ", skipped: " + get(Outcome.SKIPPED)
+                + ", failed: " + get(Outcome.FAILED) + ")"
+                + " (peak heap: " + getPeakHeapBytes() / (1024 * 1024) + " MB"
+                + ", peak retained after gc: " + getPeakRetainedHeapBytes() / (1024 * 1024) + " MB)";
+    }
+}
@@ -0,0 +1,241 @@
+package lt.twoday.runner;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.openrewrite.Recipe;
+
+import lt.twoday.extractmethodmarker.MarkExtractMethodBlocksRecipe;
+import lt.twoday.openrewrite.LineRanges;
+import lt.twoday.openrewrite.jfr.RecipeRecording;
+import lt.twoday.reduceconditionbranches.ReduceBranchesAndMarkExtractMethodBlocks;
+import lt.twoday.reduceconditionbranches.ReduceConditionBranches;
+import lt.twoday.reduceconditionbranches.ReductionCandidates;
+
+/***
+ * command line entry point of {@link SourceTreeRunner}:
+ *
+ * <pre>
+ * java -cp reduce-condition-branches.jar:... lt.twoday.runner.RunnerMain [options] &lt;source root&gt;...
+ *
+ *   --recipes reduce,mark   recipes to run, in order: reduce, mark, reduce+mark (both fused into one pass)
+ *                           or fully qualified recipe class names (default: reduce)
+ *   --threads N             worker threads (default: number of available processors)
+ *   --max-in-flight N       most files being processed at once, bounds the heap needed (default: number of threads)
+ *   --cache DIR             directory of the fingerprint cache of unchanged sources (default: no cache)
+ *   --report-only           only list the conditionals ReduceConditionBranches would rewrite, one per line, change no files
+ *   --max-method-nodes N    leave methods with more statement nodes untouched (default: no limit)
+ *   --max-method-nesting N  leave methods nested deeper untouched (default: no limit)
+ *   --max-method-millis N   leave methods taking longer untouched (default: no limit)
+ *   --skip GLOB             leave files with paths matching the glob alone, can be repeated
+ *   --max-file-bytes N      leave larger files alone (default: no limit)
+ *   --include-generated     rewrite generated sources too (skipped by their header by default)
+ *   --since REV             only the sources changed since the branch forked off REV (i.e. main),
+ *                           uncommitted and untracked ones included, as told by the local git working copy
+ *   --changed-lines         with --since: only the methods overlapping the changed lines (untracked sources as a whole)
+ *   --lines FILE:RANGES     only the methods of the file overlapping the lines, i.e. Parser.java:10-20,35;
+ *                           can be repeated, only the listed files are processed unless --since is given
+ *   --watch                 stay running with the recipes and a parser warm, rewriting the sources under the roots as they are saved
+ *   --port N                stay running and rewrite the sources asked for on the loopback port N, see {@link WatchDaemon}
+ *   --jfr FILE              record the flight recorder events of the recipes with the bundled profile, dumped to FILE on exit
+ * </pre>
+ */
+public class RunnerMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> recipeNames = new ArrayList<>();
+        Integer maxNodes = null;
+        Integer maxNesting = null;
+        Long maxMillis = null;
+        List<String> skippedGlobs = new ArrayList<>();
+        long maxFileBytes = Long.MAX_VALUE;
+        boolean skipGenerated = true;
+        String sinceRevision = null;
+        boolean changedLines = false;
+        Map<Path, LineRanges> lineRanges = new HashMap<>();
+        boolean watch = false;
+        int port = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxInFlight = 0;
+        Path cacheDirectory = null;
+        boolean reportOnly = false;
+        Path recordingFile = null;
+        List<Path> sourceRoots = new ArrayList<>();
+
+        for (int i=0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--recipes":
+                    for (String name: args[++i].split(","))
+                        recipeNames.add(name.trim());
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-in-flight":
+                    maxInFlight = Integer.parseInt(args[++i]);
+                    break;
+                case "--cache":
+                    cacheDirectory = Paths.get(args[++i]);
+                    break;
+                case "--report-only":
+                    reportOnly = true;
+                    break;
+                case "--max-method-nodes":
+                    maxNodes = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-method-nesting":
+                    maxNesting = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-method-millis":
+                    maxMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--skip":
+                    skippedGlobs.add(args[++i]);
+                    break;
+                case "--max-file-bytes":
+                    maxFileBytes = Long.parseLong(args[++i]);
+                    break;
+                case "--include-generated":
+                    skipGenerated = false;
+                    break;
+                case "--since":
+                    sinceRevision = args[++i];
+                    break;
+                case "--changed-lines":
+                    changedLines = true;
+                    break;
+                case "--watch":
+                    watch = true;
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--jfr":
+                    recordingFile = Paths.get(args[++i]);
+                    break;
+                case "--lines":
+                    for (Map.Entry<String, LineRanges> e: LineRanges.parseByPath(Collections.singletonList(args[++i])).entrySet())
+                        lineRanges.put(Paths.get(e.getKey()).toAbsolutePath().normalize(), e.getValue());
+                    break;
+                default:
+                    if (args[i].startsWith("--"))
+                        usage("unknown option " + args[i]);
+                    sourceRoots.add(Paths.get(args[i]));
+            }
+        }
+
+        if (sourceRoots.isEmpty() && (lineRanges.isEmpty() || sinceRevision != null))
+            usage("no source root given");
+        
+        if (changedLines && sinceRevision == null)
+            usage("--changed-lines needs --since");
+
+        List<Recipe> recipes = new ArrayList<>();
+        for (String name: recipeNames)
+            recipes.add(createRecipe(name, maxNodes, maxNesting, maxMillis));
+        
+        if (reportOnly) {
+            if (!recipes.isEmpty())
+                usage("--report-only runs only ReduceConditionBranches, --recipes can not be used with it");
+            
+            // candidates are only reported while a file gets processed, a cached file would hide them
+            if (cacheDirectory != null)
+                usage("--report-only can not be used with --cache");
+            
+            recipes.add(new ReduceConditionBranches(null, true, maxNodes, maxNesting, maxMillis, null));
+        }
+        
+        if (recipes.isEmpty())
+            recipes.add(createRecipe("reduce", maxNodes, maxNesting, maxMillis));
+
+        if (recordingFile != null)
+            RecipeRecording.start(recordingFile);
+
+        FingerprintCache cache = cacheDirectory == null ? null : FingerprintCache.open(cacheDirectory, recipes);
+
+        if (watch || port >= 0) {
+            if (sinceRevision != null || !lineRanges.isEmpty())
+                usage("--watch and --port rewrite the sources as they are saved or asked for, --since and --lines can not be used with them");
+            
+            runDaemon(recipes, cache, new SkippedSources(skippedGlobs, maxFileBytes, skipGenerated), sourceRoots, watch, port);
+            return;
+        }
+
+        if (maxInFlight <= 0)
+            maxInFlight = threads;
+
+        if (changedLines)
+            lineRanges.putAll(GitChangedSources.changedLines(sinceRevision, sourceRoots));
+
+        RunStatistics statistics;
+        try (Stream<Path> files = listSources(sourceRoots, sinceRevision, lineRanges)) {
+            statistics = new SourceTreeRunner(recipes, cache, new SkippedSources(skippedGlobs, maxFileBytes, skipGenerated), lineRanges)
+                                .run(files, threads, maxInFlight);
+        }
+
+        for (ReductionCandidates.Row candidate: statistics.getReductionCandidates())
+            System.out.println(candidate.format());
+
+        System.out.println(statistics + " using " + threads + " threads");
+        if (cache != null)
+            System.out.println(cache);
+    }
+
+    private static void runDaemon(List<Recipe> recipes, FingerprintCache cache, SkippedSources skipped, 
+                                  List<Path> sourceRoots, boolean watch, int port) throws Exception {
+        WatchDaemon daemon = new WatchDaemon(new SourceTreeRunner(recipes, cache, skipped), sourceRoots);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            daemon.close();
+            if (cache != null)
+                try {
+                    cache.save();
+                } catch (Exception e) {
+                    System.err.println("could not save the cache: " + e);
+                }
+        }));
+
+        daemon.warmUp();
+        if (watch)
+            daemon.watch();
+        if (port >= 0)
+            System.out.println("listening on port " + daemon.listen(port));
+
+        daemon.awaitClose();
+    }
+
+    private static Stream<Path> listSources(List<Path> sourceRoots, String sinceRevision, Map<Path, LineRanges> lineRanges) throws Exception {
+        if (sinceRevision != null)
+            return GitChangedSources.since(sinceRevision, sourceRoots).stream();
+        
+        if (!lineRanges.isEmpty())
+            return new ArrayList<>(lineRanges.keySet()).stream();
+        
+        return SourceTreeRunner.streamSources(sourceRoots);
+    }
+
+    /*** the method budget applies to the recipes of this project only; line ranges are put in the execution context per file by the runner */
+    static Recipe createRecipe(String name, Integer maxNodes, Integer maxNesting, Long maxMillis) throws ReflectiveOperationException {
+        switch (name) {
+            case "reduce":
+                return new ReduceConditionBranches(null, null, maxNodes, maxNesting, maxMillis, null);
+            case "mark":
+                return new MarkExtractMethodBlocksRecipe(maxNodes, maxNesting, maxMillis, null);
+            case "reduce+mark":
+                return new ReduceBranchesAndMarkExtractMethodBlocks(maxNodes, maxNesting, maxMillis, null);
+            default:
+                return (Recipe) Class.forName(name).getDeclaredConstructor().newInstance();
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("usage: RunnerMain [--recipes reduce,mark] [--threads N] [--max-in-flight N] [--cache DIR] [--report-only] [--max-method-nodes N] [--max-method-nesting N] [--max-method-millis N] [--skip GLOB] [--max-file-bytes N] [--include-generated] [--since REV [--changed-lines]] [--lines FILE:RANGES] [--watch] [--port N] <source root>...");
+        System.exit(1);
+    }
+}
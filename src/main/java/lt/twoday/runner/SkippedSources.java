@@ -0,0 +1,68 @@
+package lt.twoday.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import lt.twoday.openrewrite.GeneratedSources;
+
+/***
+ * decides which sources the runner leaves alone without parsing them:
+ * paths matching the given globs, files over a size limit and generated sources.
+ *
+ * Paths and sizes are checked before a file is read, the generator header
+ * only looks at the first {@link GeneratedSources#HEADER_CHARS} bytes of the content,
+ * and there only at the parts the recipes look at once parsed.
+ */
+public class SkippedSources {
+
+    /*** skips nothing */
+    public static final SkippedSources NONE = new SkippedSources(Collections.emptyList(), Long.MAX_VALUE, false);
+
+    private final List<PathMatcher> skippedPaths = new ArrayList<>();
+    private final long maxBytes;
+    private final boolean skipGenerated;
+
+    /*** @param skippedGlobs path globs, i.e. {@code **}{@code /generated/**}, matched against the paths as the runner finds them */
+    public SkippedSources(List<String> skippedGlobs, long maxBytes, boolean skipGenerated) {
+        for (String glob: skippedGlobs)
+            skippedPaths.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        this.maxBytes = maxBytes;
+        this.skipGenerated = skipGenerated;
+    }
+
+    /*** why the file is skipped judging by its path and size, or null if it is not */
+    @Nullable
+    public String beforeReading(Path file) throws IOException {
+        for (PathMatcher matcher: skippedPaths)
+            if (matcher.matches(file))
+                return "path excluded";
+
+        if (maxBytes < Long.MAX_VALUE && Files.size(file) > maxBytes)
+            return "larger than " + maxBytes + " bytes";
+
+        return null;
+    }
+
+    /*** why the file is skipped judging by its content, or null if it is not */
+    @Nullable
+    public String byContent(byte[] content) {
+        if (!skipGenerated)
+            return null;
+
+        String header = new String(content, 0, Math.min(content.length, GeneratedSources.HEADER_CHARS), UTF_8);
+        if (GeneratedSources.hasGeneratedHeader(header))
+            return "generated";
+
+        return null;
+    }
+}
@@ -0,0 +1,283 @@
+package lt.twoday.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.SourceFile;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lt.twoday.openrewrite.GeneratedSources;
+import lt.twoday.openrewrite.LineRanges;
+import lt.twoday.reduceconditionbranches.ReductionCandidates;
+import lt.twoday.runner.RunStatistics.Outcome;
+
+/***
+ * runs the recipes over java sources on disk outside of the rewrite maven / gradle plugins:
+ * reads, parses, rewrites and writes back each file independently,
+ * fanning the files out over worker threads where every worker owns its own parser.
+ *
+ * Files are streamed: at most a given number of them are in flight at once, and nothing of a file
+ * (its tree, its execution context) is kept once it is written back, so the heap needed
+ * depends on the largest files rather than on the size of the source tree.
+ *
+ * Given line ranges of a file limit the recipes to the methods overlapping them, see {@link LineRanges}.
+ *
+ * Only the visitors of the given recipes are applied (no recipe lists, no scanning recipes),
+ * which is all the recipes of this project need.
+ */
+public class SourceTreeRunner {
+
+    private static final Logger log  = LoggerFactory.getLogger(SourceTreeRunner.class);
+
+    private final List<Recipe> recipes;
+
+    @Nullable
+    private final FingerprintCache cache;
+
+    private final SkippedSources skipped;
+
+    // keyed by absolute, normalized paths
+    private final Map<Path, LineRanges> lineRanges;
+
+    public SourceTreeRunner(List<Recipe> recipes, @Nullable FingerprintCache cache) {
+        this(recipes, cache, SkippedSources.NONE);
+    }
+
+    public SourceTreeRunner(List<Recipe> recipes, @Nullable FingerprintCache cache, SkippedSources skipped) {
+        this(recipes, cache, skipped, Collections.emptyMap());
+    }
+
+    public SourceTreeRunner(List<Recipe> recipes, @Nullable FingerprintCache cache, SkippedSources skipped, Map<Path, LineRanges> lineRanges) {
+        this.recipes = recipes;
+        this.cache = cache;
+        this.skipped = skipped;
+        this.lineRanges = lineRanges;
+    }
+
+    public RunStatistics run(Path sourceRoot) throws IOException {
+        return run(findSources(sourceRoot), 1);
+    }
+
+    public RunStatistics run(List<Path> files, int threads) throws IOException {
+        return run(files.stream(), threads, threads);
+    }
+
+    /*** processes the files as the stream yields them, with at most {@code maxInFlight} files being processed at once */
+    public RunStatistics run(Stream<Path> files, int threads, int maxInFlight) throws IOException {
+        RunStatistics statistics = new RunStatistics();
+
+        if (threads <= 1)
+            runSequentially(files, statistics);
+        else
+            runInParallel(files, threads, Math.max(1, maxInFlight), statistics);
+
+        statistics.finish();
+
+        if (cache != null) {
+            cache.save();
+            log.info("{}", cache);
+        }
+
+        return statistics;
+    }
+
+    private void runSequentially(Stream<Path> files, RunStatistics statistics) {
+        JavaParser parser = createParser();
+
+        files.forEach(file -> processAndSample(file, parser, statistics));
+    }
+
+    private void runInParallel(Stream<Path> files, int threads, int maxInFlight, RunStatistics statistics) throws IOException {
+        // a JavaParser is not thread safe: one (warm) parser per worker thread
+        ThreadLocal<JavaParser> parsers = ThreadLocal.withInitial(SourceTreeRunner::createParser);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        try {
+            Iterator<Path> it = files.iterator();
+            while (it.hasNext()) {
+                Path file = it.next();
+                inFlight.acquire();
+                workers.execute(() -> {
+                    try {
+                        processAndSample(file, parsers.get(), statistics);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+
+            // all the files are done once every permit is back
+            inFlight.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while processing sources", e);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private void processAndSample(Path file, JavaParser parser, RunStatistics statistics) {
+        // a fresh execution context per file: rows of the recipes' data tables pile up in it otherwise
+        ExecutionContext executionContext = createExecutionContext();
+        statistics.add(process(file, parser, executionContext));
+        statistics.addReductionCandidates(ReductionCandidates.rowsIn(executionContext));
+        statistics.sampleRetainedHeap();
+    }
+
+    public Outcome process(Path file, JavaParser parser, ExecutionContext executionContext) {
+        try {
+            String skipReason = skipped.beforeReading(file);
+            if (skipReason != null)
+                return skip(file, skipReason);
+            
+            byte[] content = Files.readAllBytes(file);
+            
+            skipReason = skipped.byContent(content);
+            if (skipReason != null)
+                return skip(file, skipReason);
+            
+            LineRanges ranges = lineRanges.isEmpty() ? null : lineRanges.get(file.toAbsolutePath().normalize());
+            if (ranges != null)
+                LineRanges.put(executionContext, ranges);
+            else
+                ranges = LineRanges.in(executionContext);
+            
+            // a file left unchanged within some lines only may still change as a whole: the cache is for whole files
+            FingerprintCache wholeFileCache = ranges == null ? cache : null;
+            
+            if (wholeFileCache != null && wholeFileCache.isUnchanged(content))
+                return Outcome.CACHED;
+
+            String source = new String(content, UTF_8);
+
+            String printed = rewrite(file, source, parser, executionContext);
+            if (printed == null) {
+                log.warn("could not parse {}", file);
+                return Outcome.FAILED;
+            }
+
+            if (printed.equals(source) && GeneratedSources.isSkipped(executionContext))
+                return skip(file, "generated");
+            
+            if (printed.equals(source)) {
+                if (wholeFileCache != null)
+                    wholeFileCache.recordUnchanged(content);
+                return Outcome.UNCHANGED;
+            }
+
+            Files.write(file, printed.getBytes(UTF_8));
+            log.debug("rewrote {}", file);
+            return Outcome.CHANGED;
+        } catch (Exception e) {
+            log.error("failed to process {}", file, e);
+            return Outcome.FAILED;
+        }
+    }
+
+    /***
+     * the source as rewritten by the recipes, or null if it could not be parsed.
+     * No skip rules, line ranges of the runner or cache apply, nothing is read or written.
+     */
+    @Nullable
+    public String rewrite(String source, JavaParser parser, ExecutionContext executionContext) {
+        return rewrite(null, source, parser, executionContext);
+    }
+
+    /*** @param file the path the recipes report the source by, the one derived from its package and class if null */
+    @Nullable
+    public String rewrite(@Nullable Path file, String source, JavaParser parser, ExecutionContext executionContext) {
+        SourceFile before = parse(source, parser, executionContext);
+        if (!(before instanceof J.CompilationUnit))
+            return null;
+
+        if (file != null)
+            before = before.withSourcePath(file);
+
+        SourceFile after = before;
+        for (Recipe recipe: recipes)
+            after = apply(recipe, after, executionContext);
+
+        return after == before ? source : after.printAll();
+    }
+
+    private static Outcome skip(Path file, String reason) {
+        log.debug("skipped {}: {}", file, reason);
+        return Outcome.SKIPPED;
+    }
+
+    public static List<Path> findSources(Path sourceRoot) throws IOException {
+        try (Stream<Path> files = streamSources(sourceRoot)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    /*** java sources under the root, found lazily while the stream is consumed; the stream must be closed */
+    public static Stream<Path> streamSources(Path sourceRoot) throws IOException {
+        return Files.walk(sourceRoot)
+                    .filter(f -> f.getFileName().toString().endsWith(".java"))
+                    .filter(Files::isRegularFile);
+    }
+
+    /*** java sources under all the roots, found lazily while the stream is consumed; the stream must be closed */
+    public static Stream<Path> streamSources(List<Path> sourceRoots) {
+        return sourceRoots.stream()
+                    .flatMap(root -> {
+                        try {
+                            return streamSources(root);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+    }
+
+    public static JavaParser createParser() {
+        return JavaParser.fromJavaVersion().build();
+    }
+
+    public static ExecutionContext createExecutionContext() {
+        return new InMemoryExecutionContext(e -> log.warn("recipe error", e));
+    }
+
+    @Nullable
+    private static SourceFile parse(String source, JavaParser parser, ExecutionContext executionContext) {
+        try {
+            return parser.parse(executionContext, source)
+                        .findFirst()
+                        .orElse(null);
+        } finally {
+            parser.reset();
+        }
+    }
+
+    private static SourceFile apply(Recipe recipe, SourceFile sourceFile, ExecutionContext executionContext) {
+        TreeVisitor<?, ExecutionContext> visitor = recipe.getVisitor();
+        if (!visitor.isAcceptable(sourceFile, executionContext))
+            return sourceFile;
+
+        Tree ret = visitor.visit(sourceFile, executionContext);
+        return ret == null ? sourceFile : (SourceFile) ret;
+    }
+}
@@ -0,0 +1,428 @@
+package lt.twoday.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lt.twoday.openrewrite.LineRanges;
+import lt.twoday.runner.RunStatistics.Outcome;
+
+/***
+ * keeps the recipes and a parser warm in a long-lived process, rewriting sources as they are saved
+ * or as asked through a local socket. A save is rewritten by classes already loaded and compiled, rather than by a fresh JVM:
+ * {@link #warmUp()} logs how long the first and the last of its rewrites took, the difference being what warming up saves.
+ *
+ * All the rewriting happens on a single worker thread owning the one warm parser.
+ * Saved sources are found by a {@link WatchService} over the source roots; the events of a save
+ * are gathered until the roots are quiet for {@link #QUIET_MILLIS}, as editors write a file in several steps.
+ * When the watch service missed events, the sources of the directory are rewritten as if they were all saved.
+ * The daemon remembers the fingerprint of every file it has processed, so the events caused
+ * by its own writes (and saves that change nothing) do not trigger another run.
+ *
+ * The socket listens on the loopback address only and takes one request per line, answering each with a line:
+ * <pre>
+ *   /abs/path/A.java            -> CHANGED 12 ms
+ *   /abs/path/A.java:10-20,35   -> only the methods overlapping the lines, see {@link LineRanges}
+ *   stats                       -> latency of the recent rewrites
+ * </pre>
+ * Only sources under the source roots are rewritten on request.
+ */
+public class WatchDaemon implements Closeable {
+
+    /*** how long the source roots stay quiet before the saved sources are rewritten */
+    public static final long QUIET_MILLIS = 25;
+
+    /*** longest a saved source waits while other events keep coming */
+    private static final long MAX_DELAY_MILLIS = 250;
+
+    static final int WARMUP_ROUNDS = 30;
+    private static final int LATENCY_SAMPLES = 1000;
+
+    // i.e. /abs/path/A.java:10-20,35
+    private static final Pattern RANGED_REQUEST = Pattern.compile("^(.+):([0-9][0-9,\\- ]*)$");
+
+    private static final Logger log  = LoggerFactory.getLogger(WatchDaemon.class);
+
+    private final SourceTreeRunner runner;
+    private final List<Path> sourceRoots = new ArrayList<>();
+
+    // a JavaParser is not thread safe: all the work is done on the worker thread, with its one parser
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(daemonThreads("rewrite-worker"));
+    private final JavaParser parser = SourceTreeRunner.createParser();
+
+    // fingerprints of the files as last processed (or written back), by real path; used on the worker thread only
+    private final Map<Path, String> processedFingerprints = new HashMap<>();
+
+    // milliseconds of the recent rewrites, guarded by itself
+    private final Deque<Long> latencies = new ArrayDeque<>();
+
+    private final ExecutorService connections = Executors.newCachedThreadPool(daemonThreads("rewrite-request"));
+
+    @Nullable
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    @Nullable
+    private ServerSocket serverSocket;
+
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    public WatchDaemon(SourceTreeRunner runner, List<Path> sourceRoots) throws IOException {
+        this.runner = runner;
+        for (Path sourceRoot: sourceRoots)
+            this.sourceRoots.add(sourceRoot.toRealPath());
+    }
+
+    /***
+     * rewrites a sample source held in memory repeatedly, so the first real save does not pay for class loading and JIT compilation.
+     * The sample bypasses the skip rules and the cache, which would leave it alone or remember it unchanged.
+     */
+    public void warmUp() throws IOException {
+        long start = System.nanoTime();
+
+        long firstNanos = 0;
+        long lastNanos = 0;
+        for (int i=0; i < WARMUP_ROUNDS; i++) {
+            long roundStart = System.nanoTime();
+            call(() -> runner.rewrite(WARMUP_SOURCE, parser, SourceTreeRunner.createExecutionContext()));
+            lastNanos = System.nanoTime() - roundStart;
+            if (i == 0)
+                firstNanos = lastNanos;
+        }
+
+        log.info("warmed up in {} ms, rewriting the sample in {} ms at first and {} ms in the end",
+                 TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                 TimeUnit.NANOSECONDS.toMillis(firstNanos),
+                 TimeUnit.NANOSECONDS.toMillis(lastNanos));
+    }
+
+    /*** starts watching the source roots (and directories created in them later) for saved java sources */
+    public void watch() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path sourceRoot: sourceRoots)
+            register(sourceRoot, null);
+
+        Thread watcher = daemonThreads("source-watcher").newThread(this::watchLoop);
+        watcher.start();
+
+        log.info("watching {} directories under {}", watchedDirectories.size(), sourceRoots);
+    }
+
+    /*** starts taking requests on the loopback address; port 0 picks a free port. Returns the port listened on */
+    public int listen(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+
+        Thread acceptor = daemonThreads("request-acceptor").newThread(this::acceptLoop);
+        acceptor.start();
+
+        log.info("listening on {}", serverSocket.getLocalSocketAddress());
+        return serverSocket.getLocalPort();
+    }
+
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    @Override
+    public void close() {
+        if (closed.getCount() == 0)
+            return;
+        closed.countDown();
+
+        closeQuietly(watchService);
+        closeQuietly(serverSocket);
+        connections.shutdownNow();
+        worker.shutdown();
+    }
+
+    /*** rewrites the file on the worker thread, limited to the methods overlapping the ranges if given */
+    public Outcome rewrite(Path file, @Nullable LineRanges ranges) throws IOException {
+        return call(() -> process(file, ranges));
+    }
+
+    /*** the median and 90th percentile of the recent rewrites */
+    public String latencyStats() {
+        List<Long> sorted;
+        synchronized (latencies) {
+            sorted = new ArrayList<>(latencies);
+        }
+        if (sorted.isEmpty())
+            return "no rewrites yet";
+
+        Collections.sort(sorted);
+        return sorted.size() + " rewrites, median " + sorted.get(sorted.size() / 2) + " ms"
+                + ", p90 " + sorted.get(sorted.size() * 9 / 10) + " ms"
+                + ", max " + sorted.get(sorted.size() - 1) + " ms";
+    }
+
+    private Outcome process(Path file, @Nullable LineRanges ranges) {
+        long start = System.nanoTime();
+
+        ExecutionContext executionContext = SourceTreeRunner.createExecutionContext();
+        if (ranges != null)
+            LineRanges.put(executionContext, ranges);
+
+        Outcome ret = runner.process(file, parser, executionContext);
+        rememberProcessed(file);
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        synchronized (latencies) {
+            if (latencies.size() == LATENCY_SAMPLES)
+                latencies.removeFirst();
+            latencies.addLast(millis);
+        }
+
+        log.info("{} {} in {} ms", ret, file, millis);
+        return ret;
+    }
+
+    /*** runs on the worker thread: rewrites a saved file unless the save is the daemon's own write or changed nothing */
+    private void processSaved(Path file) {
+        try {
+            String fingerprint = FingerprintCache.fingerprint(Files.readAllBytes(file));
+            if (fingerprint.equals(processedFingerprints.get(file)))
+                return;
+        } catch (NoSuchFileException e) {
+            processedFingerprints.remove(file);
+            return;
+        } catch (IOException e) {
+            log.warn("could not read {}", file, e);
+            return;
+        }
+
+        process(file, null);
+    }
+
+    private void rememberProcessed(Path file) {
+        try {
+            processedFingerprints.put(file, FingerprintCache.fingerprint(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            processedFingerprints.remove(file);
+        }
+    }
+
+    private void watchLoop() {
+        Set<Path> saved = new LinkedHashSet<>();
+        long firstSaved = 0;
+        try {
+            while (true) {
+                WatchKey key = saved.isEmpty()
+                                    ? watchService.take()
+                                    : watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (key != null)
+                    collectSaved(key, saved);
+
+                if (saved.isEmpty())
+                    continue;
+
+                if (firstSaved == 0)
+                    firstSaved = System.nanoTime();
+
+                if (key == null || System.nanoTime() - firstSaved > TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MILLIS)) {
+                    for (Path file: saved)
+                        worker.execute(() -> processSaved(file));
+                    saved.clear();
+                    firstSaved = 0;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.debug("stopped watching");
+        }
+    }
+
+    private void collectSaved(WatchKey key, Set<Path> saved) {
+        collectSaved(watchedDirectories.get(key), key.pollEvents(), saved);
+
+        if (!key.reset())
+            watchedDirectories.remove(key);
+    }
+
+    /*** adds the java sources the events of the watched directory tell saved to {@code saved} */
+    void collectSaved(Path directory, List<WatchEvent<?>> events, Set<Path> saved) {
+        for (WatchEvent<?> event: events) {
+            if (event.kind() == OVERFLOW) {
+                // which sources got saved is unknown: all of them, those processed and not saved since being left alone by their fingerprint
+                log.warn("missed file events under {}, rewriting all the sources in it", directory);
+                register(directory, saved);
+                continue;
+            }
+
+            Path path = directory.resolve((Path) event.context());
+            if (Files.isDirectory(path, NOFOLLOW_LINKS)) {
+                // the files of a directory created or moved in may be there before it is watched
+                if (event.kind() == ENTRY_CREATE)
+                    register(path, saved);
+            } else if (path.getFileName().toString().endsWith(".java"))
+                saved.add(path);
+        }
+    }
+
+    /*** watches the directory and the ones under it, adding the java sources found in them to {@code found} if given */
+    private void register(Path directory, @Nullable Set<Path> found) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.forEach(path -> {
+                try {
+                    if (Files.isDirectory(path, NOFOLLOW_LINKS))
+                        watchedDirectories.put(path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), path);
+                    else if (found != null && path.getFileName().toString().endsWith(".java"))
+                        found.add(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("could not watch {}", directory, e);
+        }
+    }
+
+    private void acceptLoop() {
+        while (closed.getCount() > 0) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (closed.getCount() > 0)
+                    log.warn("could not accept a request", e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), UTF_8));
+             PrintWriter out = new PrintWriter(s.getOutputStream(), true)) {
+
+            String request;
+            while ((request = in.readLine()) != null) {
+                request = request.trim();
+                if (!request.isEmpty())
+                    out.println(answer(request));
+            }
+        } catch (IOException e) {
+            log.debug("request connection failed", e);
+        }
+    }
+
+    private String answer(String request) {
+        if (request.equals("stats"))
+            return latencyStats();
+
+        try {
+            LineRanges ranges = null;
+            Matcher ranged = RANGED_REQUEST.matcher(request);
+            if (ranged.matches()) {
+                request = ranged.group(1);
+                ranges = LineRanges.parse(ranged.group(2));
+            }
+
+            Path file = Paths.get(request).toRealPath();
+            if (sourceRoots.stream().noneMatch(file::startsWith))
+                return "ERROR not under a source root: " + file;
+
+            long start = System.nanoTime();
+            Outcome outcome = rewrite(file, ranges);
+            return outcome + " " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms";
+        } catch (IOException | RuntimeException e) {
+            return "ERROR " + e;
+        }
+    }
+
+    private <T> T call(Callable<T> work) throws IOException {
+        try {
+            return worker.submit(work).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the rewrite", e);
+        } catch (ExecutionException e) {
+            throw new IOException("rewrite failed", e.getCause());
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return work -> {
+            Thread ret = new Thread(work, name);
+            ret.setDaemon(true);
+            return ret;
+        };
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        try {
+            if (closeable != null)
+                closeable.close();
+        } catch (IOException e) {
+            log.debug("could not close {}", closeable, e);
+        }
+    }
+
+    private static final String WARMUP_SOURCE =
+              "class Warmup {\n"
+            + "    int reduce(int a, int b) {\n"
+            + "        if (a > 0) {\n"
+            + "            if (b > 0) {\n"
+            + "                a++;\n"
+            + "                b++;\n"
+            + "            } else {\n"
+            + "                return b;\n"
+            + "            }\n"
+            + "        } else {\n"
+            + "            throw new IllegalArgumentException();\n"
+            + "        }\n"
+            + "        for (int i=0; i < a; i++) {\n"
+            + "            if (i % 2 == 0) {\n"
+            + "                b += i;\n"
+            + "                b *= 2;\n"
+            + "                b -= a;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return a + b;\n"
+            + "    }\n"
+            + "}\n";
+}
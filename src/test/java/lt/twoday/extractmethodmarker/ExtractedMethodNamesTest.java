@@ -0,0 +1,56 @@
+package lt.twoday.extractmethodmarker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.Statement;
+
+class ExtractedMethodNamesTest {
+
+    @Test
+    void shouldSuggestOneMethodForBlocksOfTheSameCode() {
+        List<Statement> methods = parseMethods(
+                "class A {\n"
+              + "    void first(int a) {\n"
+              + "        if (a > 0) {\n"
+              + "            a++;\n"
+              + "        }\n"
+              + "    }\n"
+              + "    void second(int a) { /* the same */ if (a>0) { a++; } }\n"
+              + "    void third(int a) {\n"
+              + "        if (a > 0) {\n"
+              + "            a--;\n"
+              + "        }\n"
+              + "    }\n"
+              + "}\n");
+        ExtractedMethodNames names = new ExtractedMethodNames();
+
+        String first = names.nameOf(bodyOf(methods.get(0)));
+
+        assertEquals(first, names.nameOf(bodyOf(methods.get(1))));
+        assertNotEquals(first, names.nameOf(bodyOf(methods.get(2))));
+
+        // another source file
+        names.clear();
+        assertNotEquals(first, names.nameOf(bodyOf(methods.get(0))));
+    }
+
+    private static J.Block bodyOf(Statement method) {
+        return ((J.MethodDeclaration) method).getBody();
+    }
+
+    private static List<Statement> parseMethods(String source) {
+        J.CompilationUnit compUnit = (J.CompilationUnit) JavaParser.fromJavaVersion().build()
+                                        .parse(new InMemoryExecutionContext(), source)
+                                        .findFirst()
+                                        .get();
+
+        return compUnit.getClasses().get(0).getBody().getStatements();
+    }
+}
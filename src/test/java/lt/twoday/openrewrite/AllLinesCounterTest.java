@@ -0,0 +1,88 @@
+package lt.twoday.openrewrite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+class AllLinesCounterTest {
+
+    private static final String SHORT_BODY = "class A {\n"
+                                           + "    int test(int a) {\n"
+                                           + "        return a;\n"
+                                           + "    }\n"
+                                           + "}\n";
+
+    private static final String LONG_BODY = "class A {\n"
+                                          + "    int test(int a) {\n"
+                                          + "        a++;\n"
+                                          + "        a++;\n"
+                                          + "        a++;\n"
+                                          + "        a++;\n"
+                                          + "        a++;\n"
+                                          + "        return a;\n"
+                                          + "    }\n"
+                                          + "}\n";
+
+    @Test
+    void shouldCountLineBreaksBetweenTokens() {
+        // before the return and before the closing brace
+        assertEquals(2, AllLinesCounter.countLines(parseBody(SHORT_BODY)));
+        assertEquals(7, AllLinesCounter.countLines(parseBody(LONG_BODY)));
+    }
+
+    @Test
+    void shouldCountBlankLinesAndCommentsWithinOneLineBreak() {
+        J.Block body = parseBody("class A {\n"
+                               + "    int test(int a) {\n"
+                               + "\n"
+                               + "        // the answer\n"
+                               + "        /* is\n"
+                               + "           a */\n"
+                               + "        return a;\n"
+                               + "\n"
+                               + "    }\n"
+                               + "}\n");
+
+        assertEquals(AllLinesCounter.countLines(parseBody(SHORT_BODY)), AllLinesCounter.countLines(body));
+    }
+
+    @Test
+    void shouldCountCrlfLikeLf() {
+        assertEquals(AllLinesCounter.countLines(parseBody(LONG_BODY)),
+                     AllLinesCounter.countLines(parseBody(LONG_BODY.replace("\n", "\r\n"))));
+    }
+
+    @Test
+    void shouldStopCountingJustAboveTheLimit() {
+        J.Block body = parseBody(LONG_BODY);
+
+        assertEquals(3, new AllLinesCounter(2, tree -> -1).count(body));
+        assertTrue(AllLinesCounter.spansMoreThan(body, 2));
+        assertFalse(AllLinesCounter.spansMoreThan(body, 7));
+        assertFalse(AllLinesCounter.spansMoreThan(parseBody(SHORT_BODY), 2));
+    }
+
+    @Test
+    void shouldTakeKnownSpansWithoutDescending() {
+        J.Block body = parseBody(LONG_BODY);
+        J.Return lastStatement = (J.Return) body.getStatements().get(body.getStatements().size()-1);
+
+        int count = new AllLinesCounter(Integer.MAX_VALUE, tree -> tree == lastStatement ? 100 : -1).count(body);
+
+        assertEquals(7 - 1 + 100, count);
+    }
+
+    private static J.Block parseBody(String source) {
+        J.CompilationUnit compUnit = (J.CompilationUnit) JavaParser.fromJavaVersion().build()
+                                        .parse(new InMemoryExecutionContext(), source)
+                                        .findFirst()
+                                        .get();
+
+        return ((J.MethodDeclaration) compUnit.getClasses().get(0).getBody().getStatements().get(0)).getBody();
+    }
+}
@@ -0,0 +1,41 @@
+package lt.twoday.openrewrite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+class DeepNestingTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "return a;                                                          | 2",
+            "{ return a; }                                                      | 2",
+            "if (a > 0) { a++; } else { a--; } return a;                        | 3",
+            "if (a > 0) a++; else a--; return a;                                | 3",
+            "if (a > 0) { a++; } else if (a < 0) { a--; } return a;             | 4",
+            "outer: for (int i=0; i < a; i++) { while (a > 0) { a--; } } return a; | 4",
+            "switch (a) { case 1: if (a > 0) { a++; } break; } return a;        | 4",
+            "try { a++; } catch (RuntimeException e) { a--; } return a;         | 3",
+    })
+    void shouldCountStatementNestingOnly(String body, int depth) {
+        assertEquals(depth, DeepNesting.depthOf(parseBody(body)));
+    }
+
+    private static J.Block parseBody(String body) {
+        J.CompilationUnit compUnit = (J.CompilationUnit) JavaParser.fromJavaVersion().build()
+                                        .parse(new InMemoryExecutionContext(),
+                                               "class A {\n"
+                                             + "    int test(int a) {\n"
+                                             + "        " + body + "\n"
+                                             + "    }\n"
+                                             + "}\n")
+                                        .findFirst()
+                                        .get();
+
+        return ((J.MethodDeclaration) compUnit.getClasses().get(0).getBody().getStatements().get(0)).getBody();
+    }
+}
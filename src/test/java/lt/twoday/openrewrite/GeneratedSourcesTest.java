@@ -0,0 +1,47 @@
+package lt.twoday.openrewrite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+class GeneratedSourcesTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "// Generated by the protocol buffer compiler.  DO NOT EDIT!\npackage a;\nclass A {}\n",
+            "/** DO NOT EDIT */\nclass A {}\n",
+            "package a;\n\nimport java.util.List;\n\n// DO NOT EDIT\nclass A {}\n",
+            "package a;\n\n@javax.annotation.Generated(value = \"x\", comments = \"a ) b\")\nclass A {}\n",
+            "@SuppressWarnings(\"all\") @Generated(\"x\")\npublic class A {}\n",
+    })
+    void shouldTellGeneratedHeaders(String source) {
+        assertGenerated(true, source);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "class A {\n    // DO NOT EDIT\n    String s = \"DO NOT EDIT\";\n}\n",
+            "package a;\n\n// DO NOT EDIT\nimport java.util.List;\n\nclass A {}\n",
+            "class A {\n    @Generated\n    void a() {}\n}\n",
+            "public @Generated class A {}\n",
+            "// nothing to see here\nclass A {}\n",
+    })
+    void shouldNotTellCodeOrCommentsPastTheHeaderGenerated(String source) {
+        assertGenerated(false, source);
+    }
+
+    /*** the raw source check and the parsed source check agree */
+    private static void assertGenerated(boolean expected, String source) {
+        J.CompilationUnit compUnit = (J.CompilationUnit) JavaParser.fromJavaVersion().build()
+                                        .parse(new InMemoryExecutionContext(), source)
+                                        .findFirst()
+                                        .get();
+
+        assertEquals(expected, GeneratedSources.hasGeneratedHeader(source), "raw source");
+        assertEquals(expected, GeneratedSources.isGenerated(compUnit), "parsed source");
+    }
+}
@@ -0,0 +1,51 @@
+package lt.twoday.openrewrite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+class LSTUtilsTest {
+
+    @Test
+    void shouldHashEquallyFormattedDifferently() {
+        J.MethodDeclaration method = parseMethod(
+                "class A {\n"
+              + "    int test(int a) {\n"
+              + "        if (a > 0) {\n"
+              + "            return a + 1;\n"
+              + "        }\n"
+              + "        return 0;\n"
+              + "    }\n"
+              + "}\n");
+
+        J.MethodDeclaration reformatted = parseMethod(
+                "class B { int test(int a) { /* positive */ if (a>0) { return a+1; }\n"
+              + "  // otherwise\n"
+              + "  return 0; } }");
+
+        assertEquals(LSTUtils.structuralHash(method), LSTUtils.structuralHash(reformatted));
+    }
+
+    @Test
+    void shouldTellApartNamesLiteralsAndOperators() {
+        long hash = LSTUtils.structuralHash(parseMethod("class A { int test(int a) { return a + 1; } }"));
+
+        assertNotEquals(hash, LSTUtils.structuralHash(parseMethod("class A { int test(int a) { return a - 1; } }")));
+        assertNotEquals(hash, LSTUtils.structuralHash(parseMethod("class A { int test(int a) { return a + 2; } }")));
+        assertNotEquals(hash, LSTUtils.structuralHash(parseMethod("class A { int test(int b) { return b + 1; } }")));
+        assertNotEquals(hash, LSTUtils.structuralHash(parseMethod("class A { int test(int a) { return (a + 1); } }")));
+    }
+
+    private static J.MethodDeclaration parseMethod(String source) {
+        J.CompilationUnit compUnit = (J.CompilationUnit) JavaParser.fromJavaVersion().build()
+                                        .parse(new InMemoryExecutionContext(), source)
+                                        .findFirst()
+                                        .get();
+
+        return (J.MethodDeclaration) compUnit.getClasses().get(0).getBody().getStatements().get(0);
+    }
+}
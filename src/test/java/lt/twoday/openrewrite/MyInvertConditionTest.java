@@ -0,0 +1,90 @@
+package lt.twoday.openrewrite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.openrewrite.Cursor;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+class MyInvertConditionTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // negations
+            "b",
+            "!b",
+            "!!b",
+            "!(a > 0)",
+            "!(a > 0 && b)",
+            "-a > 0",
+            // comparisons
+            "a < 0", "a > 0", "a <= 0", "a >= 0", "a == 0", "a != 0",
+            // && and || with parentheses
+            "a > 0 && b",
+            "a > 0 || b && c",
+            "(a > 0 || b) && c",
+            "!(a > 0 || b) && !c",
+            "((a > 0))",
+            "(a > 0) == b",
+            "true",
+            "false",
+            // instanceof
+            "o instanceof String",
+            "!(o instanceof String)",
+            "o instanceof String && b",
+            "!(o instanceof String) || a > 0",
+            // method calls and fields
+            "o.equals(s)",
+            "s.isEmpty() && !o.equals(s)",
+    })
+    void shouldInvertLikeLegacyInverter(String condition) {
+        J.CompilationUnit compUnit = parse(condition);
+        J.If iff = firstIf(compUnit);
+        Cursor cursor = new Cursor(new Cursor(new Cursor(null, Cursor.ROOT_VALUE), compUnit), iff);
+
+        String legacy = LegacyInvertCondition.invert(iff.getIfCondition(), cursor).printTrimmed(cursor);
+        String structural = MyInvertCondition.invert(iff.getIfCondition(), cursor).printTrimmed(cursor);
+
+        assertEquals(legacy, structural);
+    }
+
+    /*** the legacy inverter negated these without parentheses, so {@code !b ? a > 0 : c} */
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "b ? a > 0 : c          | (!(b ? a > 0 : c))",
+            "!(b ? a > 0 : c)       | (b ? a > 0 : c)",
+            "(b ? a > 0 : c) && c   | (!((b ? a > 0 : c) && c))",
+            "b = c                  | (!(b = c))",
+            "b &= c                 | (!(b &= c))",
+    })
+    void shouldParenthesizeWhatBindsLooserThanNegation(String condition, String inverted) {
+        J.CompilationUnit compUnit = parse(condition);
+        J.If iff = firstIf(compUnit);
+        Cursor cursor = new Cursor(new Cursor(new Cursor(null, Cursor.ROOT_VALUE), compUnit), iff);
+
+        assertEquals(inverted, MyInvertCondition.invert(iff.getIfCondition(), cursor).printTrimmed(cursor));
+    }
+
+    private static J.CompilationUnit parse(String condition) {
+        return (J.CompilationUnit) JavaParser.fromJavaVersion().build()
+                                        .parse(new InMemoryExecutionContext(),
+                                               "class A {\n"
+                                             + "    void test(Object o, String s, int a, boolean b, boolean c) {\n"
+                                             + "        if (" + condition + ") {\n"
+                                             + "            a++;\n"
+                                             + "        }\n"
+                                             + "    }\n"
+                                             + "}\n")
+                                        .findFirst()
+                                        .get();
+    }
+
+    private static J.If firstIf(J.CompilationUnit compUnit) {
+        J.MethodDeclaration method = (J.MethodDeclaration) compUnit.getClasses().get(0).getBody().getStatements().get(0);
+        return (J.If) method.getBody().getStatements().get(0);
+    }
+}
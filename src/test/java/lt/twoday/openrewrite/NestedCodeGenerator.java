@@ -0,0 +1,197 @@
+package lt.twoday.openrewrite;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/***
+ * generates compilable-looking java classes full of nested conditionals,
+ * resembling generated validators and parsers: configurable if / else nesting depth,
+ * number of else-if branches, statements per block, try and switch mixing.
+ *
+ * The output is deterministic for a given seed.
+ */
+public class NestedCodeGenerator {
+
+    private int depth = 3;
+    private int width = 2;
+    private int methodLength = 8;
+    private int methodsPerClass = 4;
+    private boolean mixTry = false;
+    private boolean mixSwitch = false;
+    private long seed = 1;
+
+    private Random random;
+    private StringBuilder out;
+
+    /*** how deep if / else statements get nested */
+    public NestedCodeGenerator depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    /*** how many else-if branches each conditional has */
+    public NestedCodeGenerator width(int width) {
+        this.width = width;
+        return this;
+    }
+
+    /*** how many statements each method body has */
+    public NestedCodeGenerator methodLength(int methodLength) {
+        this.methodLength = methodLength;
+        return this;
+    }
+
+    public NestedCodeGenerator methodsPerClass(int methodsPerClass) {
+        this.methodsPerClass = methodsPerClass;
+        return this;
+    }
+
+    public NestedCodeGenerator mixTry(boolean mixTry) {
+        this.mixTry = mixTry;
+        return this;
+    }
+
+    public NestedCodeGenerator mixSwitch(boolean mixSwitch) {
+        this.mixSwitch = mixSwitch;
+        return this;
+    }
+
+    public NestedCodeGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public String generateClass(String className) {
+        random = new Random(seed ^ className.hashCode());
+        out = new StringBuilder();
+
+        line(0, "package generated;");
+        line(0, "");
+        line(0, "class " + className + " {");
+        for (int m=0; m < methodsPerClass; m++) {
+            line(1, "void method" + m + "(int x, Object value) {");
+            block(2, 0, methodLength);
+            line(1, "}");
+            line(0, "");
+        }
+        line(0, "}");
+
+        return out.toString();
+    }
+
+    public List<Path> generateFiles(Path directory, int fileCount) throws IOException {
+        Path packageDirectory = Files.createDirectories(directory.resolve("generated"));
+
+        List<Path> ret = new ArrayList<>();
+        for (int i=0; i < fileCount; i++) {
+            String className = "Generated" + i;
+            Path file = packageDirectory.resolve(className + ".java");
+            Files.write(file, generateClass(className).getBytes(UTF_8));
+            ret.add(file);
+        }
+        return ret;
+    }
+
+    /*** a chain of {@code else if}s nested {@code depth} levels deep inside each other's else branches */
+    public static String deepElseIfChain(int depth) {
+        StringBuilder src = new StringBuilder();
+        src.append("class DeepChain {\n");
+        src.append("    int parse(int x) {\n");
+        src.append("        if (x == 0) {\n");
+        src.append("            return 0;\n");
+        for (int i=1; i < depth; i++)
+            src.append("        } else if (x == ").append(i).append(") {\n")
+               .append("            x += ").append(i).append(";\n");
+        src.append("        } else {\n");
+        src.append("            throw new IllegalArgumentException();\n");
+        src.append("        }\n");
+        src.append("        return x;\n");
+        src.append("    }\n");
+        src.append("}\n");
+        return src.toString();
+    }
+
+    public static int countLines(String source) {
+        int ret = 0;
+        for (int i=0; i < source.length(); i++)
+            if (source.charAt(i) == '\n')
+                ret++;
+        return ret;
+    }
+
+    private void block(int indent, int level, int length) {
+        for (int i=0; i < length; i++)
+            statement(indent, level, i == length-1);
+    }
+
+    private void statement(int indent, int level, boolean last) {
+        int choice = random.nextInt(10);
+
+        if (level < depth && choice < 4) {
+            conditional(indent, level);
+            return;
+        }
+
+        if (level < depth && mixTry && choice == 4) {
+            line(indent, "try {");
+            block(indent+1, level+1, 2);
+            line(indent, "} catch (RuntimeException e) {");
+            line(indent+1, "x--;");
+            line(indent, "}");
+            return;
+        }
+
+        if (level < depth && mixSwitch && choice == 5) {
+            line(indent, "switch (x % 3) {");
+            for (int c=0; c < 3; c++) {
+                line(indent+1, "case " + c + ": {");
+                block(indent+2, level+1, 2);
+                line(indent+2, "break;");
+                line(indent+1, "}");
+            }
+            line(indent, "}");
+            return;
+        }
+
+        if (last && choice >= 8) {
+            line(indent, choice == 8 ? "return;" : "throw new IllegalStateException(\"x \" + x);");
+            return;
+        }
+
+        if (choice % 2 == 0)
+            line(indent, "x += " + random.nextInt(100) + ";");
+        else
+            line(indent, "System.out.println(\"value \" + x + value);");
+    }
+
+    private void conditional(int indent, int level) {
+        int branches = 1 + random.nextInt(Math.max(1, width));
+        for (int b=0; b < branches; b++) {
+            String condition = "x " + (random.nextBoolean() ? ">" : "==") + " " + random.nextInt(100);
+            line(indent, (b == 0 ? "if (" : "} else if (") + condition + ") {");
+            block(indent+1, level+1, 1 + random.nextInt(3));
+        }
+
+        int shape = random.nextInt(3);
+        if (shape == 0) {
+            line(indent, "} else {");
+            block(indent+1, level+1, 1 + random.nextInt(3));
+        } else if (shape == 1) {
+            line(indent, "} else {");
+            line(indent+1, "throw new IllegalArgumentException(\"x \" + x);");
+        }
+        line(indent, "}");
+    }
+
+    private void line(int indent, String text) {
+        for (int i=0; i < indent; i++)
+            out.append("    ");
+        out.append(text).append('\n');
+    }
+}
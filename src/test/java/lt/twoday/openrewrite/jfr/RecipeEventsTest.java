@@ -0,0 +1,91 @@
+package lt.twoday.openrewrite.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.SourceFile;
+import org.openrewrite.java.JavaParser;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lt.twoday.reduceconditionbranches.ReduceConditionBranches;
+
+class RecipeEventsTest {
+
+    private static final String EMPTY_THEN = """
+            class A {
+                int test(int a) {
+                    a++;
+                    if (a > 0) {
+                    } else {
+                        a--;
+                    }
+                    return a;
+                }
+            }
+            """;
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void shouldEmitTheEventsOfTheRecipeWithTheBundledProfile() throws IOException {
+        List<RecordedEvent> events = record(EMPTY_THEN);
+
+        RecordedEvent compUnit = single(events, "lt.twoday.openrewrite.CompilationUnit");
+        assertEquals(ReduceConditionBranches.class.getSimpleName(), compUnit.getString("recipe"));
+        assertEquals(1, compUnit.getInt("methods"));
+
+        RecordedEvent methodReview = single(events, "lt.twoday.openrewrite.MethodReview");
+        assertEquals("test", methodReview.getString("method"));
+        assertEquals(1, methodReview.getInt("rulesApplied"));
+
+        RecordedEvent ruleApplication = single(events, "lt.twoday.openrewrite.RuleApplication");
+        assertEquals("EMPTY_THEN_SWAP", ruleApplication.getString("rule"));
+        // the if, both blocks, the else and its statement
+        assertEquals(5, ruleApplication.getInt("statements"));
+        assertFalse(ruleApplication.getDuration().isNegative());
+        // timed within the review of the method
+        assertFalse(ruleApplication.getStartTime().isBefore(methodReview.getStartTime()));
+        assertFalse(ruleApplication.getEndTime().isAfter(methodReview.getEndTime()));
+
+        assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("lt.twoday.openrewrite.InvertCondition")));
+    }
+
+    private List<RecordedEvent> record(String source) throws IOException {
+        Path recordingFile = tmp.resolve("recipes.jfr");
+        try (Recording recording = new Recording(RecipeRecording.profile())) {
+            recording.start();
+
+            ExecutionContext executionContext = new InMemoryExecutionContext(e -> { throw new AssertionError(e); });
+            SourceFile compUnit = JavaParser.fromJavaVersion().build()
+                                    .parse(executionContext, source)
+                                    .findFirst()
+                                    .get();
+            new ReduceConditionBranches().getVisitor().visit(compUnit, executionContext);
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        return RecordingFile.readAllEvents(recordingFile);
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> ret = events.stream()
+                                        .filter(event -> event.getEventType().getName().equals(name))
+                                        .collect(Collectors.toList());
+        assertEquals(1, ret.size(), name);
+        return ret.get(0);
+    }
+}
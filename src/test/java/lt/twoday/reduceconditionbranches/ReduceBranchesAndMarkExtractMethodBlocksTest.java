@@ -0,0 +1,170 @@
+package lt.twoday.reduceconditionbranches;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.DataTable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.SourceFile;
+import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaParser;
+
+import lt.twoday.extractmethodmarker.MarkExtractMethodBlocksRecipe;
+import lt.twoday.openrewrite.LineRanges;
+import lt.twoday.openrewrite.MethodsOverBudget;
+import lt.twoday.openrewrite.NestedCodeGenerator;
+
+class ReduceBranchesAndMarkExtractMethodBlocksTest {
+
+    private static final String LAST_METHOD = "void method3(";
+
+    @Test
+    void shouldRewriteLikeBothRecipesInSequence() {
+        String source = new NestedCodeGenerator()
+                            .depth(4)
+                            .width(3)
+                            .methodLength(10)
+                            .methodsPerClass(10)
+                            .mixTry(true)
+                            .mixSwitch(true)
+                            .generateClass("Mixed");
+
+        Run sequential = runSequentially(source, null, null);
+        Run fused = runFused(source, null, null);
+
+        assertNotEquals(normalize(source), normalize(sequential.printed));
+        assertEquals(normalize(sequential.printed), normalize(fused.printed));
+    }
+
+    @Test
+    void shouldLeaveMethodsTimingOutLikeBothRecipesInSequence() {
+        String source = new NestedCodeGenerator()
+                            .depth(3)
+                            .methodsPerClass(4)
+                            .generateClass("Slow");
+
+        // every method takes longer than that, in both recipes
+        Run sequential = runSequentially(source, 0L, null);
+        Run fused = runFused(source, 0L, null);
+
+        assertEquals(normalize(sequential.printed), normalize(fused.printed));
+        // reported once by the reduction and once by the marking
+        assertEquals(8, sequential.overBudget.size());
+        assertEquals(sequential.overBudget, fused.overBudget);
+    }
+
+    @Test
+    void shouldOnlyTouchTargetedMethodsLikeBothRecipesInSequence() {
+        String source = new NestedCodeGenerator()
+                            .depth(3)
+                            .methodsPerClass(4)
+                            .generateClass("Ranged");
+        int lastMethodLine = lineOf(source, LAST_METHOD);
+        LineRanges lastMethod = LineRanges.of(List.of(new int[] {lastMethodLine, lastMethodLine}));
+
+        Run sequential = runSequentially(source, null, lastMethod);
+        Run fused = runFused(source, null, lastMethod);
+
+        assertEquals(upTo(source, LAST_METHOD), upTo(fused.printed, LAST_METHOD));
+        assertEquals(normalize(sequential.printed), normalize(fused.printed));
+    }
+
+    @Test
+    void shouldTargetMethodsByTheirOriginalLinesInBothSteps() {
+        String source = new NestedCodeGenerator()
+                            .depth(3)
+                            .methodsPerClass(4)
+                            .generateClass("Ranged");
+        int lastMethodLine = lineOf(source, LAST_METHOD);
+        LineRanges lastMethod = LineRanges.of(List.of(new int[] {lastMethodLine, lastMethodLine}));
+
+        String whole = runSequentially(source, null, null).printed;
+        String ranged = runSequentially(source, null, lastMethod).printed;
+
+        // the reductions of the methods before it moved the last method
+        assertNotEquals(lastMethodLine, lineOf(whole, LAST_METHOD));
+
+        // still, the last method got reduced and marked just like in a run over the whole source, and only it
+        assertEquals(upTo(source, LAST_METHOD), upTo(ranged, LAST_METHOD));
+        assertNotEquals(normalize(from(source, LAST_METHOD)), normalize(from(ranged, LAST_METHOD)));
+        assertEquals(normalize(from(whole, LAST_METHOD)), normalize(from(ranged, LAST_METHOD)));
+    }
+
+    /*** the printed result of a run and the methods it reported over budget */
+    private static class Run {
+        String printed;
+        List<String> overBudget;
+    }
+
+    /*** reduction and marking one after another in the same execution context, like the runner does */
+    private static Run runSequentially(String source, @Nullable Long maxMillis, @Nullable LineRanges ranges) {
+        return run(source, ranges,
+                   new ReduceConditionBranches(null, null, null, null, maxMillis, null),
+                   new MarkExtractMethodBlocksRecipe(null, null, maxMillis, null));
+    }
+
+    private static Run runFused(String source, @Nullable Long maxMillis, @Nullable LineRanges ranges) {
+        return run(source, ranges, new ReduceBranchesAndMarkExtractMethodBlocks(null, null, maxMillis, null));
+    }
+
+    private static Run run(String source, @Nullable LineRanges ranges, Recipe... recipes) {
+        ExecutionContext executionContext = new InMemoryExecutionContext(e -> { throw new AssertionError(e); });
+        if (ranges != null)
+            LineRanges.put(executionContext, ranges);
+
+        SourceFile compUnit = JavaParser.fromJavaVersion().build()
+                                .parse(executionContext, source)
+                                .findFirst()
+                                .get();
+
+        Tree ret = compUnit;
+        for (Recipe recipe: recipes)
+            ret = recipe.getVisitor().visit(ret, executionContext);
+
+        Run run = new Run();
+        run.printed = ((SourceFile) ret).printAll();
+        run.overBudget = overBudget(executionContext);
+        return run;
+    }
+
+    private static List<String> overBudget(ExecutionContext executionContext) {
+        Map<DataTable<?>, List<?>> dataTables = executionContext.getMessage(ExecutionContext.DATA_TABLES, Collections.emptyMap());
+
+        List<String> ret = new ArrayList<>();
+        dataTables.forEach((dataTable, rows) -> {
+            if (dataTable instanceof MethodsOverBudget)
+                for (Object row: rows)
+                    ret.add(((MethodsOverBudget.Row) row).getMethodName() + ": " + ((MethodsOverBudget.Row) row).getReason());
+        });
+        Collections.sort(ret);
+        return ret;
+    }
+
+    private static int lineOf(String source, String text) {
+        return NestedCodeGenerator.countLines(upTo(source, text)) + 1;
+    }
+
+    private static String upTo(String source, String text) {
+        return source.substring(0, source.indexOf(text));
+    }
+
+    private static String from(String source, String text) {
+        return source.substring(source.indexOf(text));
+    }
+
+    /*** block ids and extracted method numbers differ from run to run */
+    private static String normalize(String source) {
+        return source
+                .replaceAll("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}", "<id>")
+                .replaceAll("named 'method\\d+'", "named 'method'");
+    }
+}
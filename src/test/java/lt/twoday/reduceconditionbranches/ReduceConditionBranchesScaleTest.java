@@ -0,0 +1,99 @@
+package lt.twoday.reduceconditionbranches;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.SourceFile;
+import org.openrewrite.java.JavaParser;
+
+import lt.twoday.extractmethodmarker.MarkExtractMethodBlocksRecipe;
+import lt.twoday.openrewrite.NestedCodeGenerator;
+import lt.twoday.runner.RunStatistics;
+import lt.twoday.runner.SourceTreeRunner;
+
+/***
+ * runs the recipes on big generated inputs within a time and heap budget.
+ * Excluded from the default test run, run with: gradlew scaleTest  /  mvn test -Pscale-tests
+ */
+@Tag("scale")
+class ReduceConditionBranchesScaleTest {
+
+    private static final long HEAP_BUDGET_BYTES = 2L * 1024 * 1024 * 1024;
+
+    @Test
+    void shouldRewriteHundredThousandLineFile() {
+        String source = new NestedCodeGenerator()
+                            .depth(4)
+                            .width(3)
+                            .methodLength(25)
+                            .methodsPerClass(30)
+                            .mixTry(true)
+                            .mixSwitch(true)
+                            .generateClass("Huge");
+
+        assertTrue(NestedCodeGenerator.countLines(source) >= 100_000, "generated only " + NestedCodeGenerator.countLines(source) + " lines");
+
+        resetPeakHeapUsage();
+
+        assertTimeoutPreemptively(Duration.ofMinutes(2), () -> {
+            ExecutionContext executionContext = new InMemoryExecutionContext(e -> { throw new AssertionError(e); });
+            SourceFile compUnit = JavaParser.fromJavaVersion().build()
+                                    .parse(executionContext, source)
+                                    .findFirst()
+                                    .get();
+
+            new ReduceConditionBranches().getVisitor().visit(compUnit, executionContext);
+        });
+
+        assertTrue(peakHeapUsage() < HEAP_BUDGET_BYTES, "peak heap usage " + peakHeapUsage());
+    }
+
+    @Test
+    void shouldRewriteTenThousandFiles(@TempDir Path sourceRoot) throws Exception {
+        List<Path> files = new NestedCodeGenerator()
+                            .depth(3)
+                            .methodsPerClass(3)
+                            .mixTry(true)
+                            .generateFiles(sourceRoot, 10_000);
+
+        resetPeakHeapUsage();
+
+        RunStatistics statistics = assertTimeoutPreemptively(Duration.ofMinutes(10), () ->
+            new SourceTreeRunner(Arrays.asList(new ReduceConditionBranches(), new MarkExtractMethodBlocksRecipe()), null)
+                    .run(files, Runtime.getRuntime().availableProcessors())
+        );
+
+        assertEquals(10_000, statistics.getFileCount());
+        assertEquals(0, statistics.get(RunStatistics.Outcome.FAILED));
+        assertTrue(peakHeapUsage() < HEAP_BUDGET_BYTES, "peak heap usage " + peakHeapUsage());
+    }
+
+    private static void resetPeakHeapUsage() {
+        System.gc();
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+    }
+
+    private static long peakHeapUsage() {
+        long ret = 0;
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                ret += pool.getPeakUsage().getUsed();
+        return ret;
+    }
+}
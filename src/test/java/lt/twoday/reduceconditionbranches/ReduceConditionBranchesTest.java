@@ -1,16 +1,29 @@
 package lt.twoday.reduceconditionbranches;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.openrewrite.java.Assertions.java;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.SourceFile;
+import org.openrewrite.Tree;
 import org.openrewrite.java.JavaParser;
 import org.openrewrite.test.RecipeSpec;
 import org.openrewrite.test.RewriteTest;
 
+import lt.twoday.openrewrite.MethodsOverBudget;
+import lt.twoday.openrewrite.NestedCodeGenerator;
+
 class ReduceConditionBranchesTest implements RewriteTest {
 
     @Override
@@ -221,6 +234,46 @@ class ReduceConditionBranchesTest implements RewriteTest {
         );
     }
     
+    @Test
+    void shouldFlattenWholeElseIfChainInOnePass() {
+        rewriteRun(
+            createSpec(),
+            java(
+                """
+                    class A {
+                        int test(int a) {
+                            int b = a * 2;
+                            if (a == 0) {
+                                return b;
+                            }
+                            else if (a == 1) {
+                                return b + 1;
+                            }
+                            else {
+                                return b + 2;
+                            }
+                        }
+                    }
+                """
+                    ,
+                """
+                    class A {
+                        int test(int a) {
+                            int b = a * 2;
+                            if (a == 0) {
+                                return b;
+                            }
+                            if (a == 1) {
+                                return b + 1;
+                            }
+                            return b + 2;
+                        }
+                    }
+                """
+            )
+        );
+    }
+    
     @Test
     void shouldMakeEarlyReturnInSingleIfMethodsWithLargeThenBranch() {
         rewriteRun(
@@ -872,6 +925,268 @@ class A {
         );
     }
     
+    @Test
+    void shouldReportAppliedRules() {
+        rewriteRun(
+            createSpec().andThen(spec -> spec.dataTable(ReductionRuleStats.Row.class, rows -> {
+                assertEquals(1, rows.size());
+                assertEquals(ReductionRule.ELSE_RETURN_FLATTENING, rows.get(0).getRule());
+                assertEquals(1, rows.get(0).getApplications());
+            })),
+            java(
+                """
+                    class A {
+                        void test() {
+                            int c = 0;
+                            if (c==0){
+                               c++;
+                            }
+                            else{
+                               return;
+                            }
+                            c--;
+                        }
+                    }
+                """
+                ,
+                """
+                class A {
+                    void test() {
+                        int c = 0;
+                        if (c!=0){
+                            return;
+                        }
+                        c++;
+                        c--;
+                    }
+                }
+                """
+            )
+        );
+    }
+    
+    @Test
+    void shouldAutoformatOnlyTouchedStatements() {
+        rewriteRun(
+            createSpec(),
+            java(
+                """
+                    class A {
+                        void test() {
+                            int c = 0;
+                              c += 2;
+                            if (c==0){
+                               c++;
+                            }
+                            else{
+                               return;
+                            }
+                               c--;
+                        }
+                    }
+                """
+                ,
+                """
+                class A {
+                    void test() {
+                        int c = 0;
+                          c += 2;
+                        if (c!=0){
+                            return;
+                        }
+                        c++;
+                           c--;
+                    }
+                }
+                """
+            )
+        );
+    }
+    
+    @Test
+    void shouldOnlyReportCandidatesInReportOnlyMode() {
+        rewriteRun(
+            createSpec().andThen(spec -> spec
+                    .recipe(new ReduceConditionBranches(null, true))
+                    .dataTable(ReductionCandidates.Row.class, rows -> {
+                        assertEquals(1, rows.size());
+                        assertEquals("test", rows.get(0).getMethodName());
+                        assertEquals("c==0", rows.get(0).getCondition());
+                        assertEquals(ReductionRule.ELSE_RETURN_FLATTENING, rows.get(0).getRule());
+                    })),
+            java(
+                """
+                    class A {
+                        void test() {
+                            int c = 0;
+                            if (c==0){
+                               c++;
+                            }
+                            else{
+                               return;
+                            }
+                            c--;
+                        }
+                    }
+                """
+            )
+        );
+    }
+    
+    @Test
+    void shouldNotReportCandidatesOfMethodsOverBudget() {
+        // small has 8 statement nodes, big 9
+        rewriteRun(
+            createSpec().andThen(spec -> spec
+                    .recipe(new ReduceConditionBranches(null, true, 8, null, null, null))
+                    .dataTable(MethodsOverBudget.Row.class, rows -> {
+                        assertEquals(1, rows.size());
+                        assertEquals("big", rows.get(0).getMethodName());
+                    })
+                    .dataTable(ReductionCandidates.Row.class, rows -> {
+                        assertEquals(1, rows.size());
+                        assertEquals("small", rows.get(0).getMethodName());
+                    })),
+            java(
+                """
+                    class A {
+                        void small(int c) {
+                            if (c==0){
+                               c++;
+                            }
+                            else{
+                               return;
+                            }
+                            c--;
+                        }
+                        void big(int c) {
+                            c++;
+                            if (c==0){
+                               c++;
+                            }
+                            else{
+                               return;
+                            }
+                            c--;
+                        }
+                    }
+                """
+            )
+        );
+    }
+    
+    @Test
+    void shouldLeaveMethodsOverBudgetUntouched() {
+        rewriteRun(
+            createSpec().andThen(spec -> spec
+                    .recipe(new ReduceConditionBranches(null, null, null, 2, null, null))
+                    .dataTable(MethodsOverBudget.Row.class, rows -> {
+                        assertEquals(1, rows.size());
+                        assertEquals("test", rows.get(0).getMethodName());
+                        assertEquals("nesting depth 3 exceeds 2", rows.get(0).getReason());
+                    })),
+            java(
+                """
+                    class A {
+                        void test() {
+                            int c = 0;
+                            if (c==0){
+                               c++;
+                            }
+                            else{
+                               return;
+                            }
+                            c--;
+                        }
+                    }
+                """
+            )
+        );
+    }
+    
+    @Test
+    void shouldOnlyRewriteMethodsOverlappingLineRanges() {
+        rewriteRun(
+            createSpec().andThen(spec -> spec
+                    .recipe(new ReduceConditionBranches(null, null, null, null, null, List.of("A.java:15")))),
+            java(
+                """
+                    class A {
+                        void first() {
+                            int c = 0;
+                            if (c==0){
+                                c++;
+                            }
+                            else{
+                                return;
+                            }
+                            c--;
+                        }
+                    
+                        void second() {
+                            int c = 0;
+                            if (c==0){
+                                c++;
+                            }
+                            else{
+                                return;
+                            }
+                            c--;
+                        }
+                    }
+                """
+                ,
+                """
+                    class A {
+                        void first() {
+                            int c = 0;
+                            if (c==0){
+                                c++;
+                            }
+                            else{
+                                return;
+                            }
+                            c--;
+                        }
+                    
+                        void second() {
+                            int c = 0;
+                            if (c!=0){
+                                return;
+                            }
+                            c++;
+                            c--;
+                        }
+                    }
+                """
+            )
+        );
+    }
+    
+    @Test
+    void shouldLeaveGeneratedSourcesAlone() {
+        rewriteRun(
+            createSpec(),
+            java(
+                """
+                    // Generated by the protocol buffer compiler.  DO NOT EDIT!
+                    class A {
+                        void test() {
+                            int c = 0;
+                            if (c==0){
+                               c++;
+                            }
+                            else{
+                               return;
+                            }
+                            c--;
+                        }
+                    }
+                """
+            )
+        );
+    }
+    
     @Test
     void shouldRecursivelyReviewNestedElseBranches() {
         rewriteRun(
@@ -1283,6 +1598,164 @@ class A{
     }
 */
     
+    @Test
+    void shouldReachFixpointInOneCycle() {
+        // default spec: a second cycle must not change anything
+        rewriteRun(
+            java(
+                """
+                    class A {
+                        void test(boolean a) {
+                            if (a) {
+                            } else {
+                                throw new IllegalStateException();
+                            }
+                        }
+                    }
+                """
+                ,
+                """
+                    class A {
+                        void test(boolean a) {
+                            if (!a) {
+                                throw new IllegalStateException();
+                            }
+                        }
+                    }
+                """
+            )
+        );
+    }
+    
+    @Test
+    void shouldSkipSourcesWithoutElseBranches() {
+        rewriteRun(
+                createSpec(),
+                java(
+"""
+class A {
+    void test(int a) {
+        if (a > 0) {
+            System.out.println(a);
+        }
+        if (a < 0) {
+            System.out.println(-a);
+        }
+    }
+}
+"""));
+    }
+    
+    @Test
+    void shouldAnalyseConditionalsLinearlyInMethodSize() {
+        int shortChain = methodStats(40).getIfsAnalysed();
+        int longChain = methodStats(160).getIfsAnalysed();
+        
+        assertTrue(shortChain <= 2 * 40, "analysed " + shortChain + " times a chain of 40");
+        assertTrue(longChain <= 2 * 160, "analysed " + longChain + " times a chain of 160");
+        assertTrue(longChain <= 4 * shortChain + 8, "analysed " + longChain + " vs " + shortChain);
+    }
+    
+    @Test
+    void shouldVisitSubtreesLinearlyInMethodSize() {
+        // subtree visits include the ones after formatting created new instances of the decided conditionals
+        int shortChain = methodStats(40).getNodesVisited();
+        int longChain = methodStats(160).getNodesVisited();
+        
+        assertTrue(shortChain > 0);
+        assertTrue(longChain <= 4 * shortChain + 40, "visited " + longChain + " nodes of a chain of 160 vs " + shortChain + " of 40");
+    }
+    
+    private MethodReductionStats.Row methodStats(int depth) {
+        AtomicReference<MethodReductionStats.Row> ret = new AtomicReference<>();
+        
+        rewriteRun(
+            createSpec().andThen(spec -> spec.dataTable(MethodReductionStats.Row.class, rows -> {
+                assertEquals(1, rows.size());
+                ret.set(rows.get(0));
+            })),
+            java(
+                NestedCodeGenerator.deepElseIfChain(depth),
+                spec -> spec.after(actual -> actual)
+            )
+        );
+        
+        return ret.get();
+    }
+    
+    @Test
+    void shouldReportReviewPassesOfEachMethod() {
+        rewriteRun(
+            createSpec().andThen(spec -> spec.dataTable(MethodReductionStats.Row.class, rows -> {
+                assertEquals(2, rows.size());
+                
+                // one pass rewriting, one finding nothing more to do
+                assertEquals("test", rows.get(0).getMethodName());
+                assertEquals(2, rows.get(0).getReviewPasses());
+                assertTrue(rows.get(0).isStable());
+                
+                assertEquals("plain", rows.get(1).getMethodName());
+                assertEquals(0, rows.get(1).getReviewPasses());
+                assertTrue(rows.get(1).isStable());
+            })),
+            java(
+"""
+class A {
+    int test(int a) {
+        if (a > 0) {
+            return 1;
+        } else {
+            return 2;
+        }
+    }
+    
+    int plain(int a) {
+        return a;
+    }
+}
+""",
+                spec -> spec.after(actual -> actual)
+            )
+        );
+    }
+    
+    @Test
+    void shouldNotOverflowStackOnDeeplyNestedElseIfs() throws Exception {
+        ExecutionContext executionContext = new InMemoryExecutionContext(e -> { throw new AssertionError(e); });
+        String source = NestedCodeGenerator.deepElseIfChain(2000);
+        
+        // javac itself needs a big stack to parse this
+        SourceFile compUnit = runWithStack(1024L * 1024 * 1024, () -> 
+                JavaParser.fromJavaVersion().build()
+                    .parse(executionContext, source)
+                    .findFirst()
+                    .get());
+        
+        Tree rewritten = runWithStack(256L * 1024, () -> 
+                new ReduceConditionBranches().getVisitor().visit(compUnit, executionContext));
+        
+        assertNotSame(compUnit, rewritten);
+    }
+    
+    private static <T> T runWithStack(long stackSize, Callable<T> work) throws Exception {
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        
+        Thread thread = new Thread(null, () -> {
+                try {
+                    result.set(work.call());
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }, "test", stackSize);
+        thread.start();
+        thread.join();
+        
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        return result.get();
+    }
+    
     @Test
     void putYourCodeHere() {
         rewriteRun(
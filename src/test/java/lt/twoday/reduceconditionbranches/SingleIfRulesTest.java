@@ -0,0 +1,65 @@
+package lt.twoday.reduceconditionbranches;
+
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.ELSE_EMPTY;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.ELSE_LONG;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.ELSE_THROWS;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.THEN_EMPTY;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.THEN_LONG;
+import static lt.twoday.reduceconditionbranches.SingleIfFeature.THEN_THROWS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SingleIfRulesTest {
+
+    @Test
+    void shouldDecideLikeTheOriginalIfChain() {
+        for (int mask=0; mask < 1 << SingleIfFeature.values().length; mask++) {
+            SingleIfRule rule = SingleIfRules.defaults().decide(mask);
+            assertEquals(originalDecision(mask), rule == null ? null : rule.getRewrite(), "feature mask " + mask);
+        }
+    }
+
+    @Test
+    void shouldSkipDisabledRules() {
+        SingleIfRules rules = SingleIfRules.defaults().disable(List.of("throwingThen", "bothBranches"));
+        
+        assertNull(rules.decide(SingleIfFeature.maskOf(THEN_THROWS)));
+    }
+
+    @Test
+    void shouldConsultRegisteredRulesLast() {
+        SingleIfRules rules = SingleIfRules.defaults()
+                                .disable(List.of("throwingThen", "bothBranches"))
+                                .register(new SingleIfRule("anyThrow", SingleIfFeature.maskOf(THEN_THROWS), 0, ReductionRule.TYPE_B_METHOD_BODY));
+        
+        assertEquals("anyThrow", rules.decide(SingleIfFeature.maskOf(THEN_THROWS)).getName());
+        assertEquals("throwingElse", rules.decide(SingleIfFeature.maskOf(ELSE_THROWS)).getName());
+    }
+
+    private static ReductionRule originalDecision(int mask) {
+        boolean thenEmpty = (mask & THEN_EMPTY.bit()) != 0;
+        boolean elseEmpty = (mask & ELSE_EMPTY.bit()) != 0;
+        boolean thenLong = (mask & THEN_LONG.bit()) != 0;
+        boolean elseLong = (mask & ELSE_LONG.bit()) != 0;
+        boolean thenThrows = (mask & THEN_THROWS.bit()) != 0;
+        boolean elseThrows = (mask & ELSE_THROWS.bit()) != 0;
+        
+        if (thenEmpty && elseLong)
+            return ReductionRule.TYPE_A_METHOD_BODY;
+        if (elseEmpty && thenLong && !thenThrows)
+            return ReductionRule.TYPE_B_METHOD_BODY;
+        if (elseThrows && !thenThrows)
+            return ReductionRule.TYPE_B_METHOD_BODY;
+        if (thenThrows)
+            return ReductionRule.TYPE_C_METHOD_BODY;
+        if (!elseEmpty && !elseLong && thenLong)
+            return ReductionRule.TYPE_B_METHOD_BODY;
+        if (!thenEmpty && !elseEmpty)
+            return ReductionRule.TYPE_C_METHOD_BODY;
+        return null;
+    }
+}
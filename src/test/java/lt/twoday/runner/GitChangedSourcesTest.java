@@ -0,0 +1,137 @@
+package lt.twoday.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lt.twoday.openrewrite.LineRanges;
+
+class GitChangedSourcesTest {
+
+    @TempDir
+    Path tmp;
+
+    private Path sources;
+
+    /***
+     * a feature branch forked off main, which moved on after the fork:
+     * A changed in a commit and in the working copy, B and C only in the working copy (B losing a line, C deleted),
+     * N untracked, D and E changed on main only
+     */
+    @BeforeEach
+    void createWorkingCopy() throws IOException, InterruptedException {
+        sources = Files.createDirectories(tmp.resolve("src"));
+        git("init", "-q");
+        git("checkout", "-q", "-b", "main");
+        git("config", "user.name", "test");
+        git("config", "user.email", "test@example.com");
+        git("config", "commit.gpgsign", "false");
+
+        for (String name: Arrays.asList("A", "B", "C", "D"))
+            write(name, source(name));
+        commit("base");
+
+        git("checkout", "-q", "-b", "feature");
+        write("A", source("A").replace("line3;", "line3a;"));
+        commit("change A");
+
+        git("checkout", "-q", "main");
+        write("D", source("D").replace("line2;", "line2a;"));
+        write("E", source("E"));
+        commit("change D, add E");
+        git("checkout", "-q", "feature");
+
+        write("A", read("A").replace("line8;", "line8a;").replace("line9;", "line9a;"));
+        write("B", source("B").replace("    int line5;\n", ""));
+        Files.delete(sources.resolve("C.java"));
+        write("N", source("N"));
+        Files.write(sources.resolve("notes.txt"), "not a source".getBytes(UTF_8));
+    }
+
+    @Test
+    void shouldListCommittedModifiedAndUntrackedSourcesSinceTheMergeBase() throws IOException {
+        List<Path> changed = GitChangedSources.since("main", sources);
+
+        // not C, deleted, nor D and E, changed on main after the fork
+        assertEquals(set("A", "B", "N"), new HashSet<>(changed));
+    }
+
+    @Test
+    void shouldTellChangedLinesOfTrackedSources() throws IOException {
+        Map<Path, LineRanges> changed = GitChangedSources.changedLines("main", sources);
+
+        assertEquals(set("A", "B"), changed.keySet());
+        // committed and modified hunks alike
+        assertEquals("3,8-9", changed.get(file("A")).toString());
+        // a removal-only hunk marks the lines it lies between
+        assertEquals("4-5", changed.get(file("B")).toString());
+    }
+
+    @Test
+    void shouldTellUncommittedChangesSinceHead() throws IOException {
+        // HEAD is its own merge base: only what is not committed yet
+        Map<Path, LineRanges> changed = GitChangedSources.changedLines("HEAD", sources);
+
+        assertEquals("8-9", changed.get(file("A")).toString());
+        assertEquals("4-5", changed.get(file("B")).toString());
+        assertEquals(set("A", "B", "N"), new HashSet<>(GitChangedSources.since("HEAD", sources)));
+    }
+
+    /*** a ten line class */
+    private static String source(String name) {
+        StringBuilder ret = new StringBuilder("class " + name + " {\n");
+        for (int line=2; line < 10; line++)
+            ret.append("    int line").append(line).append(";\n");
+        return ret.append("}\n").toString();
+    }
+
+    private void write(String name, String source) throws IOException {
+        Files.write(sources.resolve(name + ".java"), source.getBytes(UTF_8));
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(sources.resolve(name + ".java")), UTF_8);
+    }
+
+    private Path file(String name) throws IOException {
+        return sources.resolve(name + ".java").toRealPath();
+    }
+
+    private Set<Path> set(String... names) throws IOException {
+        Set<Path> ret = new HashSet<>();
+        for (String name: names)
+            ret.add(file(name));
+        return ret;
+    }
+
+    private void commit(String message) throws IOException, InterruptedException {
+        git("add", "-A");
+        git("commit", "-q", "-m", message);
+    }
+
+    private void git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+
+        Process process = new ProcessBuilder(command)
+                                .directory(tmp.toFile())
+                                .redirectErrorStream(true)
+                                .start();
+        String out = new String(process.getInputStream().readAllBytes(), UTF_8);
+        assertEquals(0, process.waitFor(), String.join(" ", command) + ": " + out);
+    }
+}
@@ -0,0 +1,297 @@
+package lt.twoday.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.tree.J;
+
+import lt.twoday.openrewrite.NestedCodeGenerator;
+import lt.twoday.reduceconditionbranches.ReduceConditionBranches;
+import lt.twoday.reduceconditionbranches.ReductionCandidates;
+import lt.twoday.runner.RunStatistics.Outcome;
+
+class SourceTreeRunnerTest {
+
+    private static final String REDUCIBLE = """
+            class A {
+                int test(int a) {
+                    if (a > 0) {
+                        return 1;
+                    } else {
+                        return 2;
+                    }
+                }
+            }
+            """;
+
+    private static final String PLAIN = """
+            class B {
+                int test(int a) {
+                    return a;
+                }
+            }
+            """;
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void shouldSkipSourcesTheCacheKnowsUnchanged() throws IOException {
+        Path sourceRoot = writeSources();
+        Recipe recipe = new ReduceConditionBranches();
+
+        RunStatistics first = runCached(sourceRoot, recipe);
+        assertEquals(1, first.get(Outcome.CHANGED));
+        assertEquals(1, first.get(Outcome.UNCHANGED));
+        assertEquals(0, first.get(Outcome.CACHED));
+
+        // B is known unchanged, A got rewritten and turns out unchanged now
+        RunStatistics second = runCached(sourceRoot, recipe);
+        assertEquals(1, second.get(Outcome.CACHED));
+        assertEquals(1, second.get(Outcome.UNCHANGED));
+
+        RunStatistics third = runCached(sourceRoot, recipe);
+        assertEquals(2, third.get(Outcome.CACHED));
+    }
+
+    @Test
+    void shouldCountCacheHitsAndMisses() throws IOException {
+        Path sourceRoot = writeSources();
+        Recipe recipe = new ReduceConditionBranches();
+        runCached(sourceRoot, recipe);
+
+        FingerprintCache cache = FingerprintCache.open(cacheDirectory(), List.of(recipe));
+        assertEquals(1, cache.size());
+
+        new SourceTreeRunner(List.of(recipe), cache).run(sourceRoot);
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void shouldProcessSourcesChangedSinceCached() throws IOException {
+        Path sourceRoot = writeSources();
+        Recipe recipe = new ReduceConditionBranches();
+        runCached(sourceRoot, recipe);
+        runCached(sourceRoot, recipe);
+
+        Files.write(sourceRoot.resolve("B.java"), PLAIN.replace("return a;", "return a + 1;").getBytes(UTF_8));
+
+        RunStatistics ret = runCached(sourceRoot, recipe);
+        assertEquals(1, ret.get(Outcome.CACHED));
+        assertEquals(1, ret.get(Outcome.UNCHANGED));
+    }
+
+    @Test
+    void shouldDiscardTheCacheWhenRecipeOptionsChange() throws IOException {
+        Path sourceRoot = writeSources();
+        Recipe recipe = new ReduceConditionBranches();
+        Recipe reconfigured = new ReduceConditionBranches(List.of("throwingThen"), null);
+
+        assertNotEquals(FingerprintCache.recipeKey(List.of(recipe)), FingerprintCache.recipeKey(List.of(reconfigured)));
+
+        runCached(sourceRoot, recipe);
+        runCached(sourceRoot, recipe);
+        assertEquals(2, runCached(sourceRoot, recipe).get(Outcome.CACHED));
+
+        RunStatistics ret = runCached(sourceRoot, reconfigured);
+        assertEquals(0, ret.get(Outcome.CACHED));
+        assertEquals(2, ret.get(Outcome.UNCHANGED));
+    }
+
+    @Test
+    void shouldDropTheLeastRecentlyUsedFingerprintsPastTheLimit() throws IOException {
+        byte[] a = "class A {}".getBytes(UTF_8);
+        byte[] b = "class B {}".getBytes(UTF_8);
+        byte[] c = "class C {}".getBytes(UTF_8);
+
+        FingerprintCache first = FingerprintCache.open(cacheDirectory(), "key", 2);
+        first.recordUnchanged(a);
+        first.recordUnchanged(b);
+        first.save();
+
+        // A was edited since: only B hits
+        FingerprintCache second = FingerprintCache.open(cacheDirectory(), "key", 2);
+        assertTrue(second.isUnchanged(b));
+        second.recordUnchanged(c);
+        second.save();
+
+        FingerprintCache third = FingerprintCache.open(cacheDirectory(), "key", 2);
+        assertEquals(2, third.size());
+        assertTrue(third.isUnchanged(b));
+        assertTrue(third.isUnchanged(c));
+        assertFalse(third.isUnchanged(a));
+    }
+
+    @Test
+    void shouldRewriteInParallelLikeSequentially() throws IOException {
+        Path sequentialRoot = tmp.resolve("sequential");
+        Path parallelRoot = tmp.resolve("parallel");
+        NestedCodeGenerator generator = new NestedCodeGenerator().depth(3).methodsPerClass(3).mixTry(true);
+        generator.generateFiles(sequentialRoot, 40);
+        generator.generateFiles(parallelRoot, 40);
+        List<Recipe> recipes = List.of(new ReduceConditionBranches());
+
+        RunStatistics sequential = new SourceTreeRunner(recipes, null).run(sequentialRoot);
+        // more files than workers: every worker's parser is reused for several files
+        RunStatistics parallel = new SourceTreeRunner(recipes, null).run(SourceTreeRunner.findSources(parallelRoot), 4);
+
+        assertTrue(sequential.get(Outcome.CHANGED) > 0);
+        assertEquals(0, parallel.get(Outcome.FAILED));
+        assertEquals(40, parallel.getFileCount());
+        assertEquals(sequential.get(Outcome.CHANGED), parallel.get(Outcome.CHANGED));
+        assertEquals(contents(sequentialRoot), contents(parallelRoot));
+    }
+
+    @Test
+    void shouldStreamSourcesLikeBatch() throws IOException {
+        Path batchRoot = tmp.resolve("batch");
+        Path streamedRoot = tmp.resolve("streamed");
+        NestedCodeGenerator generator = new NestedCodeGenerator().depth(3).methodsPerClass(3);
+        generator.generateFiles(batchRoot, 20);
+        generator.generateFiles(streamedRoot, 20);
+        List<Recipe> recipes = List.of(new ReduceConditionBranches());
+
+        RunStatistics batch = new SourceTreeRunner(recipes, null).run(SourceTreeRunner.findSources(batchRoot), 4);
+        RunStatistics streamed;
+        try (Stream<Path> files = SourceTreeRunner.streamSources(streamedRoot)) {
+            streamed = new SourceTreeRunner(recipes, null).run(files, 4, 2);
+        }
+
+        assertEquals(20, streamed.getFileCount());
+        assertEquals(batch.get(Outcome.CHANGED), streamed.get(Outcome.CHANGED));
+        assertEquals(contents(batchRoot), contents(streamedRoot));
+    }
+
+    @Test
+    void shouldReportGeneratedSourcesSkippedByTheRunnerOrTheRecipe() throws IOException {
+        Path sourceRoot = writeSources();
+        String generated = "// DO NOT EDIT\n" + REDUCIBLE.replace("class A", "class G");
+        Files.write(sourceRoot.resolve("G.java"), generated.getBytes(UTF_8));
+        // the marker in code only, neither skips it
+        Files.write(sourceRoot.resolve("C.java"), REDUCIBLE.replace("class A", "class C").replace("int test", "String marker = \"DO NOT EDIT\";\n    int test").getBytes(UTF_8));
+        List<Recipe> recipes = List.of(new ReduceConditionBranches());
+
+        RunStatistics byRecipe = new SourceTreeRunner(recipes, null).run(sourceRoot);
+        assertEquals(1, byRecipe.get(Outcome.SKIPPED));
+        assertEquals(2, byRecipe.get(Outcome.CHANGED));
+        assertEquals(generated, new String(Files.readAllBytes(sourceRoot.resolve("G.java")), UTF_8));
+
+        RunStatistics byRunner = new SourceTreeRunner(recipes, null, new SkippedSources(List.of(), Long.MAX_VALUE, true))
+                                    .run(sourceRoot);
+        assertEquals(1, byRunner.get(Outcome.SKIPPED));
+        assertEquals(3, byRunner.get(Outcome.UNCHANGED));
+    }
+
+    @Test
+    void shouldCollectTheCandidatesOfAReportOnlyRun() throws IOException {
+        Path sourceRoot = writeSources();
+        Files.write(sourceRoot.resolve("C.java"), REDUCIBLE.replace("class A", "class C").getBytes(UTF_8));
+
+        RunStatistics statistics = new SourceTreeRunner(List.of(new ReduceConditionBranches(null, true)), null)
+                                        .run(sourceRoot);
+
+        assertEquals(3, statistics.get(Outcome.UNCHANGED));
+        List<String> candidates = statistics.getReductionCandidates().stream()
+                                        .map(ReductionCandidates.Row::format)
+                                        .collect(Collectors.toList());
+        // by the path of the file, not the one derived from the class
+        assertEquals(2, candidates.size(), candidates.toString());
+        assertTrue(candidates.get(0).startsWith(sourceRoot.resolve("A.java") + ": A.test if (a > 0) -> "), candidates.get(0));
+        assertTrue(candidates.get(1).startsWith(sourceRoot.resolve("C.java") + ": C.test if (a > 0) -> "), candidates.get(1));
+    }
+
+    @Test
+    void shouldKeepAtMostGivenFilesInFlight() throws IOException {
+        Path sourceRoot = tmp.resolve("src");
+        new NestedCodeGenerator().depth(2).methodsPerClass(1).generateFiles(sourceRoot, 20);
+
+        ConcurrencyProbe probe = new ConcurrencyProbe();
+        try (Stream<Path> files = SourceTreeRunner.streamSources(sourceRoot)) {
+            new SourceTreeRunner(List.of(probe), null).run(files, 4, 2);
+        }
+
+        assertEquals(20, probe.visited.get());
+        assertTrue(probe.maxConcurrent.get() <= 2, "files in flight: " + probe.maxConcurrent.get());
+    }
+
+    /*** records how many sources are visited at the same time */
+    private static class ConcurrencyProbe extends Recipe {
+
+        final AtomicInteger visited = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        @Override
+        public String getDisplayName() {
+            return "Concurrency probe";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Records how many sources are visited at the same time.";
+        }
+
+        @Override
+        public TreeVisitor<?, ExecutionContext> getVisitor() {
+            return new JavaIsoVisitor<ExecutionContext>() {
+                @Override
+                public J.CompilationUnit visitCompilationUnit(J.CompilationUnit compUnit, ExecutionContext executionContext) {
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    concurrent.decrementAndGet();
+                    visited.incrementAndGet();
+                    return compUnit;
+                }
+            };
+        }
+    }
+
+    private static Map<Path, String> contents(Path sourceRoot) throws IOException {
+        Map<Path, String> ret = new TreeMap<>();
+        for (Path file: SourceTreeRunner.findSources(sourceRoot))
+            ret.put(sourceRoot.relativize(file), new String(Files.readAllBytes(file), UTF_8));
+        return ret;
+    }
+
+    private RunStatistics runCached(Path sourceRoot, Recipe recipe) throws IOException {
+        List<Recipe> recipes = List.of(recipe);
+        return new SourceTreeRunner(recipes, FingerprintCache.open(cacheDirectory(), recipes))
+                    .run(sourceRoot);
+    }
+
+    private Path cacheDirectory() {
+        return tmp.resolve("cache");
+    }
+
+    private Path writeSources() throws IOException {
+        Path ret = Files.createDirectories(tmp.resolve("src"));
+        Files.write(ret.resolve("A.java"), REDUCIBLE.getBytes(UTF_8));
+        Files.write(ret.resolve("B.java"), PLAIN.getBytes(UTF_8));
+        return ret;
+    }
+}
@@ -0,0 +1,233 @@
+package lt.twoday.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.tree.J;
+
+import lt.twoday.reduceconditionbranches.ReduceConditionBranches;
+
+class WatchDaemonTest {
+
+    private static final String REDUCIBLE = """
+            class A {
+                int test(int a) {
+                    if (a > 0) {
+                        return 1;
+                    } else {
+                        return 2;
+                    }
+                }
+            }
+            """;
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path tmp;
+
+    private Path sourceRoot;
+    private WatchDaemon daemon;
+
+    @BeforeEach
+    void createSourceRoot() throws IOException {
+        sourceRoot = Files.createDirectories(tmp.resolve("src")).toRealPath();
+    }
+
+    @AfterEach
+    void closeDaemon() {
+        if (daemon != null)
+            daemon.close();
+    }
+
+    @Test
+    void shouldRewriteSourcesAsTheyAreSaved() throws IOException {
+        daemon = watching(new ReduceConditionBranches());
+
+        Path a = write("A.java", REDUCIBLE);
+        awaitRewritten(a, 1);
+
+        // the daemon's own write does not trigger another run, so this is the second one
+        Path b = write("B.java", REDUCIBLE.replace("class A", "class B"));
+        awaitRewritten(b, 2);
+        assertEquals(2, rewrites());
+    }
+
+    @Test
+    void shouldRewriteASourceSavedInSeveralStepsOnce() throws IOException {
+        daemon = watching(new ReduceConditionBranches());
+
+        // like an editor truncating the file and writing it in parts, all within the quiet period
+        Path a = write("A.java", "");
+        write("A.java", REDUCIBLE.substring(0, REDUCIBLE.length() / 2));
+        write("A.java", REDUCIBLE);
+        awaitRewritten(a, 1);
+
+        Path b = write("B.java", REDUCIBLE.replace("class A", "class B"));
+        awaitRewritten(b, 2);
+        assertEquals(2, rewrites());
+    }
+
+    @Test
+    void shouldLeaveSourcesDeletedBeforeTheirRewriteAlone() throws IOException {
+        daemon = watching(new ReduceConditionBranches());
+
+        Path a = write("A.java", REDUCIBLE);
+        Files.delete(a);
+
+        Path b = write("B.java", REDUCIBLE.replace("class A", "class B"));
+        awaitRewritten(b, 1);
+        assertEquals(1, rewrites());
+
+        // saved again, it is new to the daemon
+        write("A.java", REDUCIBLE);
+        awaitRewritten(a, 2);
+        assertEquals(2, rewrites());
+    }
+
+    @Test
+    void shouldTakeAllSourcesOfADirectoryAsSavedWhenEventsWereMissed() throws IOException {
+        Path a = write("A.java", REDUCIBLE);
+        Files.createDirectories(sourceRoot.resolve("b"));
+        Path b = write("b/B.java", REDUCIBLE.replace("class A", "class B"));
+        write("notes.txt", "not a source");
+        daemon = watching(new ReduceConditionBranches());
+
+        Set<Path> saved = new HashSet<>();
+        daemon.collectSaved(sourceRoot, List.of(overflow()), saved);
+
+        assertEquals(Set.of(a, b), saved);
+    }
+
+    @Test
+    void shouldWarmUpInMemoryBypassingTheSkipRulesAndTheCache() throws IOException {
+        VisitCounter counter = new VisitCounter();
+        List<Recipe> recipes = List.of(counter);
+        FingerprintCache cache = FingerprintCache.open(tmp.resolve("cache"), recipes);
+        // skips every source with any content
+        SkippedSources skipped = new SkippedSources(List.of(), 0, true);
+        daemon = new WatchDaemon(new SourceTreeRunner(recipes, cache, skipped), List.of(sourceRoot));
+
+        daemon.warmUp();
+
+        assertEquals(WatchDaemon.WARMUP_ROUNDS, counter.visited.get());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits() + cache.getMisses());
+        assertEquals("no rewrites yet", daemon.latencyStats());
+    }
+
+    /*** counts the sources visited */
+    private static class VisitCounter extends Recipe {
+
+        final AtomicInteger visited = new AtomicInteger();
+
+        @Override
+        public String getDisplayName() {
+            return "Visit counter";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Counts the sources visited.";
+        }
+
+        @Override
+        public TreeVisitor<?, ExecutionContext> getVisitor() {
+            return new JavaIsoVisitor<ExecutionContext>() {
+                @Override
+                public J.CompilationUnit visitCompilationUnit(J.CompilationUnit compUnit, ExecutionContext executionContext) {
+                    visited.incrementAndGet();
+                    return compUnit;
+                }
+            };
+        }
+    }
+
+    private WatchDaemon watching(Recipe recipe) throws IOException {
+        WatchDaemon ret = new WatchDaemon(new SourceTreeRunner(List.of(recipe), null), List.of(sourceRoot));
+        ret.watch();
+        return ret;
+    }
+
+    private Path write(String path, String source) throws IOException {
+        return Files.write(sourceRoot.resolve(path), source.getBytes(UTF_8));
+    }
+
+    /*** waits for the file to be rewritten and the daemon to count at least the given rewrites, that of the file included */
+    private void awaitRewritten(Path file, int rewrites) {
+        await(() -> isRewritten(file) && rewrites() >= rewrites, file + " rewritten");
+    }
+
+    private static boolean isRewritten(Path file) {
+        try {
+            return !new String(Files.readAllBytes(file), UTF_8).contains("else");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*** rewrites done so far, as told by the latency statistics */
+    private int rewrites() {
+        String stats = daemon.latencyStats();
+        if (stats.equals("no rewrites yet"))
+            return 0;
+
+        assertTrue(stats.endsWith(" ms"), stats);
+        return Integer.parseInt(stats.substring(0, stats.indexOf(' ')));
+    }
+
+    private static void await(BooleanSupplier condition, String what) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline)
+                fail("timed out waiting for " + what);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("interrupted waiting for " + what);
+            }
+        }
+    }
+
+    private static WatchEvent<Object> overflow() {
+        return new WatchEvent<Object>() {
+            @Override
+            public WatchEvent.Kind<Object> kind() {
+                return OVERFLOW;
+            }
+
+            @Override
+            public int count() {
+                return 1;
+            }
+
+            @Override
+            public Object context() {
+                return null;
+            }
+        };
+    }
+}